@@ -0,0 +1,45 @@
+package com.zlk.common.db.util;
+
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
+import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
+
+/**
+ * @author likuan.zhou
+ * @title: FencingTokenUtil
+ * @projectName common
+ * @description: fencing令牌条件更新（配合common-redis的IRedissonLock.addFencedLock等）
+ * 表中增加令牌列（如fencing_token bigint），更新时写入本次令牌，且只有已写入的令牌不大于本次令牌（或为空）时才更新，同一持有者用同一令牌可以多次写入：
+ * <pre>
+ * Long token = redissonLock.addFencedTryLock(key, 3, 10);
+ * int rows = orderMapper.update(order, FencingTokenUtil.fence(new UpdateWrapper&lt;Order&gt;().eq("id", id), "fencing_token", token));
+ * if (rows == 0) {
+ *     // 令牌已过期（锁已被后来的持有者拿到），放弃本次写入
+ * }
+ * </pre>
+ * @date 2021/10/18/016 19:05
+ */
+public class FencingTokenUtil {
+
+    /**
+     * 追加令牌条件：column &lt;= token or column is null，并set column = token
+     * @param wrapper 更新条件
+     * @param column 令牌列名
+     * @param token fencing令牌
+     * @return wrapper
+     */
+    public static <T> UpdateWrapper<T> fence(UpdateWrapper<T> wrapper, String column, long token) {
+        return wrapper.and(w -> w.le(column, token).or().isNull(column)).set(column, token);
+    }
+
+    /**
+     * 追加令牌条件（lambda）：column &lt;= token or column is null，并set column = token
+     * @param wrapper 更新条件
+     * @param column 令牌列
+     * @param token fencing令牌
+     * @return wrapper
+     */
+    public static <T> LambdaUpdateWrapper<T> fence(LambdaUpdateWrapper<T> wrapper, SFunction<T, ?> column, long token) {
+        return wrapper.and(w -> w.le(column, token).or().isNull(column)).set(column, token);
+    }
+}
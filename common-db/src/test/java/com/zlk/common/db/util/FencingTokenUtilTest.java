@@ -0,0 +1,94 @@
+package com.zlk.common.db.util;
+
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author likuan.zhou
+ * @title: FencingTokenUtilTest
+ * @projectName common
+ * @description: fencing令牌条件更新：同一令牌可以多次写入，比已写入令牌小的写入被拒绝（h2内存库执行wrapper生成的sql）
+ * @date 2021/10/18/016 19:05
+ */
+public class FencingTokenUtilTest {
+
+    /**
+     * wrapper中的参数占位符
+     */
+    private static final Pattern PARAM = Pattern.compile("#\\{ew\\.paramNameValuePairs\\.(\\w+)}");
+
+    private Connection connection;
+
+    @Before
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:fencing");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create table t_order(id bigint primary key, status varchar(16), fencing_token bigint)");
+            statement.execute("insert into t_order(id, status) values (1, 'NEW')");
+        }
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void sameTokenWritesTwice() throws SQLException {
+        assertEquals(1, update("PAID", 5));
+        // 同一持有者用同一令牌再次写入
+        assertEquals(1, update("SHIPPED", 5));
+        assertEquals("SHIPPED", status());
+    }
+
+    @Test
+    public void staleTokenRejected() throws SQLException {
+        assertEquals(1, update("PAID", 6));
+        // 过期持有者（令牌更小）的写入被拒绝
+        assertEquals(0, update("CANCELLED", 5));
+        assertEquals("PAID", status());
+    }
+
+    private int update(String status, long token) throws SQLException {
+        UpdateWrapper<Object> wrapper = FencingTokenUtil.fence(new UpdateWrapper<>().set("status", status).eq("id", 1), "fencing_token", token);
+        Matcher matcher = PARAM.matcher("update t_order set " + wrapper.getSqlSet() + " where " + wrapper.getSqlSegment());
+        List<Object> params = new ArrayList<>();
+        StringBuffer sql = new StringBuffer();
+        while (matcher.find()) {
+            params.add(wrapper.getParamNameValuePairs().get(matcher.group(1)));
+            matcher.appendReplacement(sql, "?");
+        }
+        matcher.appendTail(sql);
+        try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                statement.setObject(i + 1, params.get(i));
+            }
+            return statement.executeUpdate();
+        }
+    }
+
+    private String status() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select status from t_order where id = 1")) {
+            resultSet.next();
+            return resultSet.getString(1);
+        }
+    }
+}
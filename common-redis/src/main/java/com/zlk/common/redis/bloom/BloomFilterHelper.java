@@ -4,6 +4,8 @@ import com.google.common.base.Preconditions;
 import com.google.common.hash.Funnel;
 import com.google.common.hash.Hashing;
 
+import java.util.function.ToLongFunction;
+
 /**
  * @author likuan.zhou
  * @title: RedisConfig
@@ -16,13 +18,78 @@ public class BloomFilterHelper<T> {
 
     private int bitSize;
 
-    private Funnel<T> funnel;
+    /**
+     * 分片数
+     */
+    private int shards;
+
+    /**
+     * 64位hash函数（murmur3_128结果的低64位）
+     */
+    private ToLongFunction<T> hashFunction;
+
+    /**
+     * 线程本地offset缓冲区，避免每次计算都分配int[]
+     */
+    private ThreadLocal<int[]> offsetBuffer;
 
     public BloomFilterHelper(Funnel<T> funnel, int expectedInsertions, double fpp) {
+        this(funnelHashFunction(funnel), expectedInsertions, fpp, 1);
+    }
+
+    /**
+     * 分片布隆过滤器
+     * @param shards 分片数，位数组拆分到shards个key中，每个值只落在其中一个分片
+     */
+    public BloomFilterHelper(Funnel<T> funnel, int expectedInsertions, double fpp, int shards) {
+        this(funnelHashFunction(funnel), expectedInsertions, fpp, shards);
+    }
+
+    /**
+     * @param hashFunction 64位hash函数，需与murmur3_128().hashObject(value, funnel).asLong()等价才能兼容已有位数组，
+     *                     可使用{@link Murmur3}实现无内存分配的计算
+     */
+    public BloomFilterHelper(ToLongFunction<T> hashFunction, int expectedInsertions, double fpp) {
+        this(hashFunction, expectedInsertions, fpp, 1);
+    }
+
+    /**
+     * 分片布隆过滤器（用于redis集群，避免单个大key/热key）
+     * 每个分片按expectedInsertions / shards的预期数量和相同fpp计算位数组长度，
+     * 分片key带hash tag（{key:i}），在集群中分散到不同slot；一个值的全部hash位都在同一分片，查询只访问一个key
+     * @param shards 分片数，为1时与不分片完全一致
+     */
+    public BloomFilterHelper(ToLongFunction<T> hashFunction, int expectedInsertions, double fpp, int shards) {
+        Preconditions.checkArgument(hashFunction != null, "hashFunction不能为空");
+        Preconditions.checkArgument(shards > 0, "shards必须大于0");
+        this.hashFunction = hashFunction;
+        this.shards = shards;
+        long shardInsertions = Math.max(1, ((long) expectedInsertions + shards - 1) / shards);
+        bitSize = optimalNumOfBits(shardInsertions, fpp);
+        numHashFunctions = optimalNumOfHashFunctions(shardInsertions, bitSize);
+        offsetBuffer = ThreadLocal.withInitial(() -> new int[numHashFunctions]);
+    }
+
+    /**
+     * 字符串布隆过滤器（无内存分配hash），位数组与Funnels.stringFunnel(UTF_8)兼容
+     */
+    public static BloomFilterHelper<CharSequence> ofString(int expectedInsertions, double fpp) {
+        return new BloomFilterHelper<>((ToLongFunction<CharSequence>) Murmur3::hash64, expectedInsertions, fpp);
+    }
+
+    /**
+     * long布隆过滤器（无内存分配hash），位数组与Funnels.longFunnel()兼容
+     */
+    public static BloomFilterHelper<Long> ofLong(int expectedInsertions, double fpp) {
+        return new BloomFilterHelper<>((ToLongFunction<Long>) Murmur3::hash64, expectedInsertions, fpp);
+    }
+
+    /**
+     * 基于guava Funnel的64位hash函数
+     */
+    static <T> ToLongFunction<T> funnelHashFunction(Funnel<T> funnel) {
         Preconditions.checkArgument(funnel != null, "funnel不能为空");
-        this.funnel = funnel;
-        bitSize = optimalNumOfBits(expectedInsertions, fpp);
-        numHashFunctions = optimalNumOfHashFunctions(expectedInsertions, bitSize);
+        return value -> Hashing.murmur3_128().hashObject(value, funnel).asLong();
     }
 
     /**
@@ -31,9 +98,46 @@ public class BloomFilterHelper<T> {
      * @return
      */
     int[] murmurHashOffset(T value) {
-        int[] offset = new int[numHashFunctions];
+        return murmurHashOffset(value, new int[numHashFunctions]);
+    }
+
+    /**
+     * 计算出value 对应hash算法的值，写入调用方提供的offset数组（长度不小于numHashFunctions）
+     * @return offset
+     */
+    int[] murmurHashOffset(T value, int[] offset) {
+        murmurHashOffset(hash64(value), offset, 0);
+        return offset;
+    }
 
-        long hash64 = Hashing.murmur3_128().hashObject(value, funnel).asLong();
+    /**
+     * 计算出value 对应hash算法的值，写入当前线程的缓冲区
+     * 返回的数组在本线程下一次调用前有效，调用方不能持有或跨线程传递
+     */
+    int[] murmurHashOffsetBuffer(T value) {
+        return murmurHashOffset(value, offsetBuffer.get());
+    }
+
+    /**
+     * 由已计算好的64位hash计算各hash函数对应的位，写入当前线程的缓冲区
+     */
+    int[] murmurHashOffsetBuffer(long hash64) {
+        int[] offset = offsetBuffer.get();
+        murmurHashOffset(hash64, offset, 0);
+        return offset;
+    }
+
+    /**
+     * value的64位hash
+     */
+    long hash64(T value) {
+        return hashFunction.applyAsLong(value);
+    }
+
+    /**
+     * 由64位hash计算各hash函数对应的位，写入offset[from, from + numHashFunctions)
+     */
+    void murmurHashOffset(long hash64, int[] offset, int from) {
         int hash1 = (int) hash64;
         int hash2 = (int) (hash64 >>> 32);
         for (int i = 1; i <= numHashFunctions; i++) {
@@ -41,10 +145,54 @@ public class BloomFilterHelper<T> {
             if (nextHash < 0) {
                 nextHash = ~nextHash;
             }
-            offset[i - 1] = nextHash % bitSize;
+            offset[from + i - 1] = nextHash % bitSize;
         }
+    }
 
-        return offset;
+    /**
+     * 64位hash对应的分片序号
+     * 分片由hash乘以黄金分割常数后的高32位决定，与计算offset所用的低/高32位相互独立
+     */
+    int shardIndex(long hash64) {
+        if (shards == 1) {
+            return 0;
+        }
+        return (int) (((hash64 * 0x9E3779B97F4A7C15L) >>> 32) % shards);
+    }
+
+    /**
+     * 分片对应的redis key，不分片时即为key本身
+     */
+    String shardKey(String key, int shard) {
+        return shards == 1 ? key : "{" + key + ":" + shard + "}";
+    }
+
+    /**
+     * 64位hash所在分片的redis key
+     */
+    String shardKey(String key, long hash64) {
+        return shardKey(key, shardIndex(hash64));
+    }
+
+    /**
+     * 分片数
+     */
+    int getShards() {
+        return shards;
+    }
+
+    /**
+     * hash方法执行次数（每个值对应的bit位数）
+     */
+    int getNumHashFunctions() {
+        return numHashFunctions;
+    }
+
+    /**
+     * bit数组长度
+     */
+    int getBitSize() {
+        return bitSize;
     }
 
     /**
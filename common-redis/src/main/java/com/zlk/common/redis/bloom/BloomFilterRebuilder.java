@@ -0,0 +1,145 @@
+package com.zlk.common.redis.bloom;
+
+import com.google.common.base.Preconditions;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.Spliterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.StreamSupport;
+
+/**
+ * @author likuan.zhou
+ * @title: BloomFilterRebuilder
+ * @projectName common
+ * @description: 布隆过滤器离线重建
+ * 1.从流式数据源并行（fork-join）计算hash位，在本地long数组中构建位数组；
+ * 2.分块SETRANGE上传到临时key（全0的块跳过，redis会自动补0）；
+ * 3.RENAME临时key覆盖正式key，原子切换，重建期间线上查询不受影响。
+ * 分片时每个分片各自上传与切换。集群模式下RENAME要求两个key在同一slot：分片key自带hash tag，
+ * 不分片时正式key需自行带hash tag（如{bloom:order}），否则RENAME会报CROSSSLOT。
+ * 重建期间写入正式key的新值会在切换后丢失，需在切换后补写或在重建期间双写。
+ * 通过{@link RedisBloomFilter#rebuild}调用。
+ * @date 2021/10/18/016 19:05
+ */
+@Slf4j
+class BloomFilterRebuilder<T> {
+
+    /**
+     * 每次SETRANGE上传的字节数
+     */
+    private static final int CHUNK_SIZE = 512 * 1024;
+
+    private static final String STAGING_SUFFIX = ":rebuild";
+
+    private final RedisTemplate redisTemplate;
+
+    private final BloomFilterHelper<T> bloomFilterHelper;
+
+    private final String key;
+
+    BloomFilterRebuilder(RedisTemplate redisTemplate, BloomFilterHelper<T> bloomFilterHelper, String key) {
+        Preconditions.checkArgument(bloomFilterHelper != null, "bloomFilterHelper不能为空");
+        this.redisTemplate = redisTemplate;
+        this.bloomFilterHelper = bloomFilterHelper;
+        this.key = key;
+    }
+
+    /**
+     * 重建布隆过滤器
+     * @param source 数据源
+     * @param parallelism 计算hash的并行度
+     * @return 写入的值数量
+     */
+    long rebuild(Spliterator<T> source, int parallelism) throws InterruptedException, ExecutionException {
+        Preconditions.checkArgument(parallelism > 0, "parallelism必须大于0");
+        int words = (bloomFilterHelper.getBitSize() + 63) >>> 6;
+        AtomicLongArray[] shards = new AtomicLongArray[bloomFilterHelper.getShards()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new AtomicLongArray(words);
+        }
+        LongAdder count = new LongAdder();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.submit(() -> StreamSupport.stream(source, true).forEach(value -> {
+                long hash64 = bloomFilterHelper.hash64(value);
+                AtomicLongArray bits = shards[bloomFilterHelper.shardIndex(hash64)];
+                for (int i : bloomFilterHelper.murmurHashOffsetBuffer(hash64)) {
+                    setBit(bits, i);
+                }
+                count.increment();
+            })).get();
+        } finally {
+            pool.shutdown();
+        }
+        for (int i = 0; i < shards.length; i++) {
+            String shardKey = bloomFilterHelper.shardKey(key, i);
+            upload(shardKey, shardKey + STAGING_SUFFIX, shards[i]);
+        }
+        log.info("布隆过滤器重建完成。key:{},count:{}", key, count.sum());
+        return count.sum();
+    }
+
+    /**
+     * 分块上传到临时key后RENAME覆盖正式key
+     */
+    private void upload(String shardKey, String stagingKey, AtomicLongArray bits) {
+        byte[] rawKey = rawKey(shardKey);
+        byte[] rawStagingKey = rawKey(stagingKey);
+        int totalBytes = (bloomFilterHelper.getBitSize() + 7) >>> 3;
+        redisTemplate.execute((RedisCallback<Object>) connection -> connection.del(rawStagingKey));
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int from = 0; from < totalBytes; from += CHUNK_SIZE) {
+                int length = Math.min(CHUNK_SIZE, totalBytes - from);
+                byte[] chunk = toBytes(bits, from, length);
+                // 全0块跳过，最后一块总是写入以保证临时key存在且长度完整
+                if (from + length == totalBytes || !isZero(chunk)) {
+                    connection.setRange(rawStagingKey, chunk, from);
+                }
+            }
+            return null;
+        });
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.rename(rawStagingKey, rawKey);
+            return null;
+        });
+    }
+
+    /**
+     * 按redis大端位序取出[from, from + length)字节
+     */
+    private static byte[] toBytes(AtomicLongArray bits, int from, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            int index = from + i;
+            bytes[i] = (byte) (bits.get(index >>> 3) >>> ((7 - (index & 7)) << 3));
+        }
+        return bytes;
+    }
+
+    private static boolean isZero(byte[] chunk) {
+        for (byte b : chunk) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void setBit(AtomicLongArray bits, int i) {
+        int word = i >>> 6;
+        long mask = 1L << (63 - (i & 63));
+        long current;
+        do {
+            current = bits.get(word);
+        } while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+    }
+
+    private byte[] rawKey(String key) {
+        return redisTemplate.getKeySerializer().serialize(key);
+    }
+}
@@ -0,0 +1,207 @@
+package com.zlk.common.redis.bloom;
+
+import com.google.common.base.Preconditions;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author likuan.zhou
+ * @title: CountingRedisBloomFilter
+ * @projectName common
+ * @description: 支持删除的计数布隆过滤器（Counting Bloom Filter）
+ * 每个hash位是一个4位计数器（BITFIELD u4），添加时计数加一，删除时计数减一，所有计数器大于0则认为存在。
+ * 计数器达到15后饱和，不再增减（此时无法得知真实计数，删除该位会产生漏判）。
+ * 每批操作按分片各执行一次lua脚本，脚本内完成检查与增减，保证原子性；占用内存为同参数普通布隆过滤器的4倍。
+ * 注意：只能删除确实添加过的值，删除未添加但误判为存在的值会导致其它值漏判。
+ * 通过{@link RedisBloomFilter#counting}创建。
+ * @date 2021/10/18/016 19:05
+ */
+public class CountingRedisBloomFilter<T> {
+
+    /**
+     * 计数器最大值（u4饱和值）
+     */
+    private static final int MAX_COUNT = 15;
+
+    /**
+     * ARGV[1]为每个值的hash位数k，其后每k个为一个值的计数器序号，返回每个值的处理结果
+     */
+    private static final byte[] ADD_SCRIPT = ("local k = tonumber(ARGV[1]) "
+            + "local result = {} "
+            + "for v = 0, (#ARGV - 1) / k - 1 do "
+            + "  for j = 1, k do "
+            + "    redis.call('BITFIELD', KEYS[1], 'OVERFLOW', 'SAT', 'INCRBY', 'u4', '#' .. ARGV[1 + v * k + j], 1) "
+            + "  end "
+            + "  result[v + 1] = 1 "
+            + "end "
+            + "return result").getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] REMOVE_SCRIPT = ("local k = tonumber(ARGV[1]) "
+            + "local result = {} "
+            + "for v = 0, (#ARGV - 1) / k - 1 do "
+            + "  local present = 1 "
+            + "  for j = 1, k do "
+            + "    if redis.call('BITFIELD', KEYS[1], 'GET', 'u4', '#' .. ARGV[1 + v * k + j])[1] == 0 then present = 0 break end "
+            + "  end "
+            + "  if present == 1 then "
+            + "    for j = 1, k do "
+            + "      local idx = '#' .. ARGV[1 + v * k + j] "
+            + "      if redis.call('BITFIELD', KEYS[1], 'GET', 'u4', idx)[1] < " + MAX_COUNT + " then "
+            + "        redis.call('BITFIELD', KEYS[1], 'OVERFLOW', 'SAT', 'INCRBY', 'u4', idx, -1) "
+            + "      end "
+            + "    end "
+            + "  end "
+            + "  result[v + 1] = present "
+            + "end "
+            + "return result").getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] CONTAINS_SCRIPT = ("local k = tonumber(ARGV[1]) "
+            + "local result = {} "
+            + "for v = 0, (#ARGV - 1) / k - 1 do "
+            + "  local present = 1 "
+            + "  for j = 1, k do "
+            + "    if redis.call('BITFIELD', KEYS[1], 'GET', 'u4', '#' .. ARGV[1 + v * k + j])[1] == 0 then present = 0 break end "
+            + "  end "
+            + "  result[v + 1] = present "
+            + "end "
+            + "return result").getBytes(StandardCharsets.UTF_8);
+
+    private static final StringRedisSerializer STRING_SERIALIZER = new StringRedisSerializer();
+
+    private final RedisTemplate redisTemplate;
+
+    private final BloomFilterHelper<T> bloomFilterHelper;
+
+    private final String key;
+
+    CountingRedisBloomFilter(RedisTemplate redisTemplate, BloomFilterHelper<T> bloomFilterHelper, String key) {
+        Preconditions.checkArgument(bloomFilterHelper != null, "bloomFilterHelper不能为空");
+        this.redisTemplate = redisTemplate;
+        this.bloomFilterHelper = bloomFilterHelper;
+        this.key = key;
+    }
+
+    /**
+     * 添加值
+     */
+    public void add(T value) {
+        addAll(Collections.singletonList(value));
+    }
+
+    /**
+     * 删除值
+     * @return true删除成功，false值不存在
+     */
+    public boolean remove(T value) {
+        return removeAll(Collections.singletonList(value))[0];
+    }
+
+    /**
+     * 判断值是否存在
+     */
+    public boolean contains(T value) {
+        return containsAll(Collections.singletonList(value))[0];
+    }
+
+    /**
+     * 批量添加值（每个分片一次lua脚本，同一pipeline发送）
+     */
+    public void addAll(Collection<T> values) {
+        eval(ADD_SCRIPT, values);
+    }
+
+    /**
+     * 批量删除值（每个分片一次lua脚本，同一pipeline发送）
+     * @return 与values迭代顺序一一对应，true删除成功，false值不存在
+     */
+    public boolean[] removeAll(Collection<T> values) {
+        return eval(REMOVE_SCRIPT, values);
+    }
+
+    /**
+     * 批量判断值是否存在（每个分片一次lua脚本，同一pipeline发送）
+     * @return 与values迭代顺序一一对应，true可能存在，false一定不存在
+     */
+    public boolean[] containsAll(Collection<T> values) {
+        return eval(CONTAINS_SCRIPT, values);
+    }
+
+    /**
+     * 每个分片执行一次脚本，结果按values顺序返回
+     */
+    private boolean[] eval(byte[] script, Collection<T> values) {
+        if (values == null || values.isEmpty()) {
+            return new boolean[0];
+        }
+        List<ShardBatch> batches = batch(values);
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (ShardBatch batch : batches) {
+                connection.eval(script, ReturnType.MULTI, 1, batch.args.toArray(new byte[0][]));
+            }
+            return null;
+        }, STRING_SERIALIZER);
+        boolean[] result = new boolean[values.size()];
+        for (int n = 0; n < batches.size(); n++) {
+            List<Integer> positions = batches.get(n).positions;
+            List<?> shardResult = (List<?>) results.get(n);
+            for (int i = 0; i < positions.size(); i++) {
+                result[positions.get(i)] = ((Number) shardResult.get(i)).longValue() == 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按分片分组计算计数器序号，按分片序号返回有值的分片
+     * 每个分片的脚本参数为：分片key（KEYS[1]）、hash位数k（ARGV[1]），之后每k个为一个值的计数器序号
+     */
+    List<ShardBatch> batch(Collection<T> values) {
+        int numHashFunctions = bloomFilterHelper.getNumHashFunctions();
+        ShardBatch[] shardBatches = new ShardBatch[bloomFilterHelper.getShards()];
+        int pos = 0;
+        for (T value : values) {
+            long hash64 = bloomFilterHelper.hash64(value);
+            int shard = bloomFilterHelper.shardIndex(hash64);
+            ShardBatch batch = shardBatches[shard];
+            if (batch == null) {
+                batch = new ShardBatch();
+                batch.args.add(rawKey(bloomFilterHelper.shardKey(key, shard)));
+                batch.args.add(String.valueOf(numHashFunctions).getBytes(StandardCharsets.UTF_8));
+                shardBatches[shard] = batch;
+            }
+            for (int i : bloomFilterHelper.murmurHashOffsetBuffer(hash64)) {
+                batch.args.add(String.valueOf(i).getBytes(StandardCharsets.UTF_8));
+            }
+            batch.positions.add(pos++);
+        }
+        List<ShardBatch> batches = new ArrayList<>();
+        for (ShardBatch batch : shardBatches) {
+            if (batch != null) {
+                batches.add(batch);
+            }
+        }
+        return batches;
+    }
+
+    private byte[] rawKey(String key) {
+        return redisTemplate.getKeySerializer().serialize(key);
+    }
+
+    /**
+     * 一个分片的脚本参数与对应的值序号
+     */
+    static class ShardBatch {
+
+        final List<byte[]> args = new ArrayList<>();
+
+        final List<Integer> positions = new ArrayList<>();
+    }
+}
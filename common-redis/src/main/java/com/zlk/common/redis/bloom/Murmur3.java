@@ -0,0 +1,141 @@
+package com.zlk.common.redis.bloom;
+
+/**
+ * @author likuan.zhou
+ * @title: Murmur3
+ * @projectName common
+ * @description: 无内存分配的murmur3_128哈希（x64版本，seed为0）
+ * 返回值等同于guava的Hashing.murmur3_128().hashXxx(...).asLong()，即128位结果的低64位，
+ * 因此与基于guava Funnel写入的布隆过滤器位数组完全兼容。
+ * 字符串按UTF-8编码逐字符流式计算（非法代理对按'?'处理，与String.getBytes(UTF_8)一致），不生成byte数组。
+ * @date 2021/10/18/016 19:05
+ */
+public final class Murmur3 {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private Murmur3() {
+    }
+
+    /**
+     * 等同于Hashing.murmur3_128().hashLong(value).asLong()（Funnels.longFunnel()）
+     */
+    public static long hash64(long value) {
+        long h1 = mixK1(value);
+        long h2 = 0;
+        return finalizeHash(h1, h2, 8);
+    }
+
+    /**
+     * 等同于Hashing.murmur3_128().hashString(value, UTF_8).asLong()（Funnels.stringFunnel(UTF_8)）
+     */
+    public static long hash64(CharSequence value) {
+        return hash64(value, 1);
+    }
+
+    /**
+     * 将value的UTF-8字节连续写入repeat次后计算hash，
+     * 等同于Funnel中连续repeat次into.putString(value, UTF_8)
+     */
+    public static long hash64(CharSequence value, int repeat) {
+        long h1 = 0;
+        long h2 = 0;
+        long k1 = 0;
+        long k2 = 0;
+        // 当前16字节块中已写入的字节数
+        int pos = 0;
+        long length = 0;
+        int n = value.length();
+        for (int r = 0; r < repeat; r++) {
+            for (int i = 0; i < n; i++) {
+                char c = value.charAt(i);
+                // encoded低位在前依次存放UTF-8字节
+                int encoded;
+                int bytes;
+                if (c < 0x80) {
+                    encoded = c;
+                    bytes = 1;
+                } else if (c < 0x800) {
+                    encoded = (0xC0 | (c >>> 6)) | ((0x80 | (c & 0x3F)) << 8);
+                    bytes = 2;
+                } else if (!Character.isSurrogate(c)) {
+                    encoded = (0xE0 | (c >>> 12)) | ((0x80 | ((c >>> 6) & 0x3F)) << 8) | ((0x80 | (c & 0x3F)) << 16);
+                    bytes = 3;
+                } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, value.charAt(++i));
+                    encoded = (0xF0 | (cp >>> 18)) | ((0x80 | ((cp >>> 12) & 0x3F)) << 8)
+                            | ((0x80 | ((cp >>> 6) & 0x3F)) << 16) | ((0x80 | (cp & 0x3F)) << 24);
+                    bytes = 4;
+                } else {
+                    encoded = '?';
+                    bytes = 1;
+                }
+                length += bytes;
+                for (int b = 0; b < bytes; b++, encoded >>>= 8) {
+                    long v = encoded & 0xFFL;
+                    if (pos < 8) {
+                        k1 |= v << (pos << 3);
+                    } else {
+                        k2 |= v << ((pos - 8) << 3);
+                    }
+                    if (++pos == 16) {
+                        h1 ^= mixK1(k1);
+                        h1 = Long.rotateLeft(h1, 27);
+                        h1 += h2;
+                        h1 = h1 * 5 + 0x52dce729;
+
+                        h2 ^= mixK2(k2);
+                        h2 = Long.rotateLeft(h2, 31);
+                        h2 += h1;
+                        h2 = h2 * 5 + 0x38495ab5;
+
+                        k1 = 0;
+                        k2 = 0;
+                        pos = 0;
+                    }
+                }
+            }
+        }
+        if (pos > 0) {
+            h1 ^= mixK1(k1);
+            h2 ^= mixK2(k2);
+        }
+        return finalizeHash(h1, h2, length);
+    }
+
+    private static long finalizeHash(long h1, long h2, long length) {
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        return h1;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
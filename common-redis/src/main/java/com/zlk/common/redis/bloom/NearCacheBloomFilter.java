@@ -0,0 +1,177 @@
+package com.zlk.common.redis.bloom;
+
+import com.google.common.base.Preconditions;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @author likuan.zhou
+ * @title: NearCacheBloomFilter
+ * @projectName common
+ * @description: 布隆过滤器本地镜像（near-cache）
+ * 本地保存一份redis位数组（GET整个key，分片时每个分片一份）的副本，查询直接在JVM内完成；添加时先写redis再写本地（write-through），
+ * 本地副本按固定间隔从redis全量刷新。适用于读多写少、位数组很少变化的场景。
+ * 通过{@link RedisBloomFilter#nearCache}创建，不再使用时需调用close()停止刷新线程。
+ * @date 2021/10/18/016 19:05
+ */
+@Slf4j
+public class NearCacheBloomFilter<T> implements Closeable {
+
+    private final RedisTemplate redisTemplate;
+
+    private final RedisBloomFilter<?> redisBloomFilter;
+
+    private final BloomFilterHelper<T> bloomFilterHelper;
+
+    private final String key;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final Object lock = new Object();
+
+    /**
+     * 本地位数组（每个分片一个），redis中第n位对应words[shard][n/64]的第(63 - n%64)位（与redis的大端位序一致）
+     */
+    private volatile AtomicLongArray[] words;
+
+    /**
+     * 刷新期间本地新增的hash位（首位为分片序号），刷新完成后补写到新副本，避免丢失刷新窗口内的添加
+     */
+    private List<int[]> pendingOffsets;
+
+    NearCacheBloomFilter(RedisTemplate redisTemplate, RedisBloomFilter<?> redisBloomFilter,
+                         BloomFilterHelper<T> bloomFilterHelper, String key, long refreshInterval, TimeUnit unit) {
+        Preconditions.checkArgument(bloomFilterHelper != null, "bloomFilterHelper不能为空");
+        Preconditions.checkArgument(refreshInterval > 0, "refreshInterval必须大于0");
+        this.redisTemplate = redisTemplate;
+        this.redisBloomFilter = redisBloomFilter;
+        this.bloomFilterHelper = bloomFilterHelper;
+        this.key = key;
+        this.words = load();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "bloom-near-cache-" + key);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::refresh, refreshInterval, refreshInterval, unit);
+    }
+
+    /**
+     * 添加值：先写redis，再写本地副本
+     */
+    public void add(T value) {
+        long hash64 = bloomFilterHelper.hash64(value);
+        int shard = bloomFilterHelper.shardIndex(hash64);
+        int[] offset = new int[bloomFilterHelper.getNumHashFunctions() + 1];
+        offset[0] = shard;
+        bloomFilterHelper.murmurHashOffset(hash64, offset, 1);
+        redisBloomFilter.setBits(bloomFilterHelper.shardKey(key, shard), bloomFilterHelper.murmurHashOffsetBuffer(hash64));
+        synchronized (lock) {
+            setBits(words, offset);
+            if (pendingOffsets != null) {
+                pendingOffsets.add(offset);
+            }
+        }
+    }
+
+    /**
+     * 判断值是否存在（仅查本地副本，不访问redis）
+     */
+    public boolean include(T value) {
+        long hash64 = bloomFilterHelper.hash64(value);
+        AtomicLongArray local = words[bloomFilterHelper.shardIndex(hash64)];
+        for (int i : bloomFilterHelper.murmurHashOffsetBuffer(hash64)) {
+            if ((local.get(i >>> 6) & (1L << (63 - (i & 63)))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 从redis全量刷新本地副本
+     */
+    public void refresh() {
+        synchronized (lock) {
+            pendingOffsets = new ArrayList<>();
+        }
+        AtomicLongArray[] fresh;
+        try {
+            fresh = load();
+        } catch (Exception ex) {
+            log.error("布隆过滤器本地副本刷新失败。key:{}", key, ex);
+            synchronized (lock) {
+                pendingOffsets = null;
+            }
+            return;
+        }
+        synchronized (lock) {
+            for (int[] offset : pendingOffsets) {
+                setBits(fresh, offset);
+            }
+            pendingOffsets = null;
+            words = fresh;
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * GET各分片位数组
+     */
+    private AtomicLongArray[] load() {
+        AtomicLongArray[] shards = new AtomicLongArray[bloomFilterHelper.getShards()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = load(bloomFilterHelper.shardKey(key, i));
+        }
+        return shards;
+    }
+
+    /**
+     * GET整个位数组并按大端位序转换为long数组
+     */
+    private AtomicLongArray load(String shardKey) {
+        byte[] rawKey = redisTemplate.getKeySerializer().serialize(shardKey);
+        byte[] bytes = (byte[]) redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.get(rawKey));
+        AtomicLongArray array = new AtomicLongArray((bloomFilterHelper.getBitSize() + 63) >>> 6);
+        if (bytes == null) {
+            return array;
+        }
+        int length = Math.min(bytes.length, array.length() << 3);
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] != 0) {
+                int word = i >>> 3;
+                array.set(word, array.get(word) | ((bytes[i] & 0xFFL) << ((7 - (i & 7)) << 3)));
+            }
+        }
+        return array;
+    }
+
+    /**
+     * offset[0]为分片序号，其余为该分片中的hash位
+     */
+    private static void setBits(AtomicLongArray[] shards, int[] offset) {
+        AtomicLongArray array = shards[offset[0]];
+        for (int n = 1; n < offset.length; n++) {
+            int i = offset[n];
+            int word = i >>> 6;
+            long mask = 1L << (63 - (i & 63));
+            long current;
+            do {
+                current = array.get(word);
+            } while ((current & mask) == 0 && !array.compareAndSet(word, current, current | mask));
+        }
+    }
+}
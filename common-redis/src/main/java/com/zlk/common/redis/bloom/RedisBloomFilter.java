@@ -1,10 +1,21 @@
 package com.zlk.common.redis.bloom;
 
 import com.google.common.base.Preconditions;
+import com.google.common.hash.Funnel;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
 /**
  * @author likuan.zhou
  * @title: RedisConfig
@@ -24,10 +35,12 @@ public class RedisBloomFilter<T> {
     public  <T>  void addByBloomFilter(BloomFilterHelper<T> bloomFilterHelper, String key, T value) {
         Preconditions.checkArgument(bloomFilterHelper != null, "bloomFilterHelper不能为空");
         //具体hash
-        int[] offset = bloomFilterHelper.murmurHashOffset(value);
+        long hash64 = bloomFilterHelper.hash64(value);
+        int[] offset = bloomFilterHelper.murmurHashOffsetBuffer(hash64);
+        String shardKey = bloomFilterHelper.shardKey(key, hash64);
         for (int i : offset) {
             //数组中（key）对应hash位置（i）标记1（setBit）
-            redisTemplate.opsForValue().setBit(key, i, true);
+            redisTemplate.opsForValue().setBit(shardKey, i, true);
         }
     }
 
@@ -37,10 +50,12 @@ public class RedisBloomFilter<T> {
     public   <T>  boolean includeByBloomFilter(BloomFilterHelper<T> bloomFilterHelper, String key, T value) {
         Preconditions.checkArgument(bloomFilterHelper != null, "bloomFilterHelper不能为空");
         //具体hash
-        int[] offset = bloomFilterHelper.murmurHashOffset(value);
+        long hash64 = bloomFilterHelper.hash64(value);
+        int[] offset = bloomFilterHelper.murmurHashOffsetBuffer(hash64);
+        String shardKey = bloomFilterHelper.shardKey(key, hash64);
         for (int i : offset) {
             //查看各个hash值（i）是否在redis（key中,就是个位数组）中有命中值(setbit命中位置为1则存在，为0不存在)
-            if (!redisTemplate.opsForValue().getBit(key, i)) {
+            if (!redisTemplate.opsForValue().getBit(shardKey, i)) {
                 return false;
             }
         }
@@ -48,6 +63,199 @@ public class RedisBloomFilter<T> {
         return true;
     }
 
+    /**
+     * 根据给定的布隆过滤器添加值（管道模式）
+     * 所有hash位的SETBIT通过pipeline一次网络往返发送，默认配置下由7次往返降为1次
+     */
+    public  <T>  void addByBloomFilterPipeline(BloomFilterHelper<T> bloomFilterHelper, String key, T value) {
+        Preconditions.checkArgument(bloomFilterHelper != null, "bloomFilterHelper不能为空");
+        //具体hash
+        long hash64 = bloomFilterHelper.hash64(value);
+        int[] offset = bloomFilterHelper.murmurHashOffsetBuffer(hash64);
+        setBits(bloomFilterHelper.shardKey(key, hash64), offset);
+    }
+
+    /**
+     * 根据给定的布隆过滤器判断值是否存在（管道模式）
+     * 所有hash位的GETBIT通过pipeline一次网络往返发送
+     */
+    public   <T>  boolean includeByBloomFilterPipeline(BloomFilterHelper<T> bloomFilterHelper, String key, T value) {
+        Preconditions.checkArgument(bloomFilterHelper != null, "bloomFilterHelper不能为空");
+        //具体hash
+        long hash64 = bloomFilterHelper.hash64(value);
+        int[] offset = bloomFilterHelper.murmurHashOffsetBuffer(hash64);
+        List<Object> bits = getBits(bloomFilterHelper.shardKey(key, hash64), offset);
+        for (Object bit : bits) {
+            //任意一位为0则一定不存在
+            if (!Boolean.TRUE.equals(bit)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * 根据给定的布隆过滤器批量添加值
+     * 先计算出全部值的hash位，再通过pipeline一次网络往返写入
+     */
+    public  <T>  void addAll(BloomFilterHelper<T> bloomFilterHelper, String key, Collection<T> values) {
+        Preconditions.checkArgument(bloomFilterHelper != null, "bloomFilterHelper不能为空");
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+        byte[][] rawKeys = new byte[values.size()][];
+        int[] offsets = batchOffset(bloomFilterHelper, key, values, rawKeys);
+        setBits(rawKeys, offsets, bloomFilterHelper.getNumHashFunctions());
+    }
+
+    /**
+     * 根据给定的布隆过滤器批量判断值是否存在
+     * 先计算出全部值的hash位，再通过pipeline一次网络往返读取
+     * @return 与values迭代顺序一一对应，true可能存在，false一定不存在
+     */
+    public  <T>  boolean[] includeAll(BloomFilterHelper<T> bloomFilterHelper, String key, Collection<T> values) {
+        Preconditions.checkArgument(bloomFilterHelper != null, "bloomFilterHelper不能为空");
+        if (values == null || values.isEmpty()) {
+            return new boolean[0];
+        }
+        int numHashFunctions = bloomFilterHelper.getNumHashFunctions();
+        byte[][] rawKeys = new byte[values.size()][];
+        int[] offsets = batchOffset(bloomFilterHelper, key, values, rawKeys);
+        List<Object> bits = getBits(rawKeys, offsets, numHashFunctions);
+        boolean[] result = new boolean[values.size()];
+        for (int v = 0; v < result.length; v++) {
+            boolean include = true;
+            for (int i = v * numHashFunctions, end = i + numHashFunctions; i < end; i++) {
+                if (!Boolean.TRUE.equals(bits.get(i))) {
+                    include = false;
+                    break;
+                }
+            }
+            result[v] = include;
+        }
+        return result;
+    }
+
+    /**
+     * 创建布隆过滤器本地镜像（near-cache），查询在本地完成，添加写穿到redis
+     * @param refreshInterval 本地副本从redis全量刷新的间隔
+     */
+    public  <T>  NearCacheBloomFilter<T> nearCache(BloomFilterHelper<T> bloomFilterHelper, String key, long refreshInterval, TimeUnit unit) {
+        return new NearCacheBloomFilter<>(redisTemplate, this, bloomFilterHelper, key, refreshInterval, unit);
+    }
+
+    /**
+     * 创建可自动扩容的布隆过滤器
+     * @param initialCapacity 第一个子过滤器的预期插入数量，之后每次扩容翻倍
+     * @param fpp 总体误判率上界
+     */
+    public  <T>  ScalableRedisBloomFilter<T> scalable(Funnel<T> funnel, String key, int initialCapacity, double fpp) {
+        return new ScalableRedisBloomFilter<>(redisTemplate, BloomFilterHelper.funnelHashFunction(funnel), key, initialCapacity, fpp);
+    }
+
+    /**
+     * 创建可自动扩容的布隆过滤器
+     * @param hashFunction 64位hash函数（可使用{@link Murmur3}）
+     * @param initialCapacity 第一个子过滤器的预期插入数量，之后每次扩容翻倍
+     * @param fpp 总体误判率上界
+     */
+    public  <T>  ScalableRedisBloomFilter<T> scalable(ToLongFunction<T> hashFunction, String key, int initialCapacity, double fpp) {
+        return new ScalableRedisBloomFilter<>(redisTemplate, hashFunction, key, initialCapacity, fpp);
+    }
+
+    /**
+     * 创建支持删除的计数布隆过滤器（4位计数器），与普通布隆过滤器使用不同的key
+     */
+    public  <T>  CountingRedisBloomFilter<T> counting(BloomFilterHelper<T> bloomFilterHelper, String key) {
+        return new CountingRedisBloomFilter<>(redisTemplate, bloomFilterHelper, key);
+    }
 
+    /**
+     * 从流式数据源重建布隆过滤器：本地并行构建位数组，分块上传到临时key后RENAME原子切换
+     * @param source 数据源（如分页查询数据库的迭代器）
+     * @param parallelism 计算hash的并行度
+     * @return 写入的值数量
+     */
+    public  <T>  long rebuild(BloomFilterHelper<T> bloomFilterHelper, String key, Iterator<T> source, int parallelism)
+            throws InterruptedException, ExecutionException {
+        return rebuild(bloomFilterHelper, key, Spliterators.spliteratorUnknownSize(source, Spliterator.NONNULL), parallelism);
+    }
+
+    /**
+     * 从流式数据源重建布隆过滤器：本地并行构建位数组，分块上传到临时key后RENAME原子切换
+     * @param source 数据源
+     * @param parallelism 计算hash的并行度
+     * @return 写入的值数量
+     */
+    public  <T>  long rebuild(BloomFilterHelper<T> bloomFilterHelper, String key, Spliterator<T> source, int parallelism)
+            throws InterruptedException, ExecutionException {
+        return new BloomFilterRebuilder<>(redisTemplate, bloomFilterHelper, key).rebuild(source, parallelism);
+    }
+
+    /**
+     * 批量计算hash位，按values顺序平铺，每个值占numHashFunctions位；rawKeys[n]为第n个值所在分片的key
+     */
+    private <T> int[] batchOffset(BloomFilterHelper<T> bloomFilterHelper, String key, Collection<T> values, byte[][] rawKeys) {
+        int numHashFunctions = bloomFilterHelper.getNumHashFunctions();
+        int[] offsets = new int[values.size() * numHashFunctions];
+        byte[][] shardRawKeys = new byte[bloomFilterHelper.getShards()][];
+        int n = 0;
+        for (T value : values) {
+            long hash64 = bloomFilterHelper.hash64(value);
+            bloomFilterHelper.murmurHashOffset(hash64, offsets, n * numHashFunctions);
+            int shard = bloomFilterHelper.shardIndex(hash64);
+            if (shardRawKeys[shard] == null) {
+                shardRawKeys[shard] = rawKey(bloomFilterHelper.shardKey(key, shard));
+            }
+            rawKeys[n++] = shardRawKeys[shard];
+        }
+        return offsets;
+    }
+
+    /**
+     * 通过pipeline一次网络往返将key中全部offset位置为1
+     */
+    void setBits(String key, int[] offsets) {
+        setBits(new byte[][]{rawKey(key)}, offsets, offsets.length);
+    }
+
+    /**
+     * 通过pipeline一次网络往返读取key中全部offset位，结果与offsets顺序一致
+     */
+    List<Object> getBits(String key, int[] offsets) {
+        return getBits(new byte[][]{rawKey(key)}, offsets, offsets.length);
+    }
+
+    /**
+     * 通过pipeline一次网络往返置位，offsets中每numHashFunctions位属于rawKeys中对应的一个key
+     */
+    private void setBits(byte[][] rawKeys, int[] offsets, int numHashFunctions) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < offsets.length; i++) {
+                connection.setBit(rawKeys[i / numHashFunctions], offsets[i], true);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 通过pipeline一次网络往返读取位，offsets中每numHashFunctions位属于rawKeys中对应的一个key，结果与offsets顺序一致
+     */
+    private List<Object> getBits(byte[][] rawKeys, int[] offsets, int numHashFunctions) {
+        return redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < offsets.length; i++) {
+                connection.getBit(rawKeys[i / numHashFunctions], offsets[i]);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 使用redisTemplate的key序列化方式序列化key（管道中直接操作connection需要原始字节）
+     */
+    private byte[] rawKey(String key) {
+        return redisTemplate.getKeySerializer().serialize(key);
+    }
 
 }
@@ -0,0 +1,245 @@
+package com.zlk.common.redis.bloom;
+
+import com.google.common.base.Preconditions;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * @author likuan.zhou
+ * @title: ScalableRedisBloomFilter
+ * @projectName common
+ * @description: 可自动扩容的布隆过滤器（Scalable Bloom Filter）
+ * 由多个子过滤器（slice）串联组成，第i个slice容量为initialCapacity * 2^i，误判率为fpp * (1 - r) * r^i（r = 0.5），
+ * 各slice误判率之和不超过fpp，因此插入量超过预期时总体误判率仍有上界，无需重建。
+ * 当前slice插入计数达到容量时自动新增slice，新值只写入最新slice，查询时检查所有slice。
+ * redis key: {key}:slices（slice数量）、{key}:{i}（第i个slice位数组）、{key}:{i}:count（第i个slice插入计数）。
+ * 通过{@link RedisBloomFilter#scalable}创建。
+ * @date 2021/10/18/016 19:05
+ */
+public class ScalableRedisBloomFilter<T> {
+
+    /**
+     * 误判率收紧比例
+     */
+    private static final double TIGHTENING_RATIO = 0.5;
+
+    /**
+     * 容量增长倍数
+     */
+    private static final int GROWTH_FACTOR = 2;
+
+    /**
+     * 仅当slice数量仍为ARGV[1]时才加一，避免多个节点同时扩容
+     */
+    private static final byte[] GROW_SCRIPT = ("local n = tonumber(redis.call('GET', KEYS[1]) or '1') "
+            + "if n == tonumber(ARGV[1]) then n = n + 1 redis.call('SET', KEYS[1], n) end "
+            + "return n").getBytes(StandardCharsets.UTF_8);
+
+    private static final StringRedisSerializer STRING_SERIALIZER = new StringRedisSerializer();
+
+    private final RedisTemplate redisTemplate;
+
+    private final ToLongFunction<T> hashFunction;
+
+    private final String key;
+
+    private final int initialCapacity;
+
+    private final double fpp;
+
+    /**
+     * 本地已知的slice（按序号），只增不减
+     */
+    private final List<BloomFilterHelper<T>> slices = new ArrayList<>();
+
+    ScalableRedisBloomFilter(RedisTemplate redisTemplate, ToLongFunction<T> hashFunction, String key, int initialCapacity, double fpp) {
+        Preconditions.checkArgument(hashFunction != null, "hashFunction不能为空");
+        Preconditions.checkArgument(initialCapacity > 0, "initialCapacity必须大于0");
+        Preconditions.checkArgument(fpp > 0 && fpp < 1, "fpp必须在(0, 1)之间");
+        this.redisTemplate = redisTemplate;
+        this.hashFunction = hashFunction;
+        this.key = key;
+        this.initialCapacity = initialCapacity;
+        this.fpp = fpp;
+        ensureSlices(1);
+    }
+
+    /**
+     * 添加值
+     * @return true新增，false已存在（或误判为已存在）
+     */
+    public boolean add(T value) {
+        long hash64 = hashFunction.applyAsLong(value);
+        int sliceCount = includeHash(hash64);
+        if (sliceCount < 0) {
+            return false;
+        }
+        int current = sliceCount - 1;
+        BloomFilterHelper<T> helper = slice(current);
+        int[] offset = new int[helper.getNumHashFunctions()];
+        helper.murmurHashOffset(hash64, offset, 0);
+        byte[] rawKey = rawKey(sliceKey(current));
+        byte[] rawCountKey = rawKey(countKey(current));
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i : offset) {
+                connection.setBit(rawKey, i, true);
+            }
+            connection.incr(rawCountKey);
+            return null;
+        }, STRING_SERIALIZER);
+        long count = (Long) results.get(results.size() - 1);
+        if (count >= capacity(current)) {
+            grow(sliceCount);
+        }
+        return true;
+    }
+
+    /**
+     * 判断值是否存在
+     */
+    public boolean include(T value) {
+        return includeHash(hashFunction.applyAsLong(value)) < 0;
+    }
+
+    /**
+     * 已插入的总数量（各slice计数之和）
+     */
+    public long count() {
+        int sliceCount = sliceCount();
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < sliceCount; i++) {
+                connection.get(rawKey(countKey(i)));
+            }
+            return null;
+        }, STRING_SERIALIZER);
+        long total = 0;
+        for (Object result : results) {
+            if (result != null) {
+                total += Long.parseLong((String) result);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 检查hash是否命中任一slice
+     * 与slice数量的读取在同一个pipeline中完成；若发现其它节点新增了slice，再补查新增部分
+     * @return 命中返回-1，未命中返回当前slice数量
+     */
+    private int includeHash(long hash64) {
+        int known = knownSlices();
+        List<Object> results = getBits(hash64, 0, known, true);
+        int sliceCount = results.get(0) == null ? 1 : Integer.parseInt((String) results.get(0));
+        if (matchAny(hash64, 0, known, results, 1)) {
+            return -1;
+        }
+        if (sliceCount > known) {
+            ensureSlices(sliceCount);
+            if (matchAny(hash64, known, sliceCount, getBits(hash64, known, sliceCount, false), 0)) {
+                return -1;
+            }
+        }
+        return sliceCount;
+    }
+
+    /**
+     * pipeline读取[from, to)各slice的hash位，withSliceCount为true时第一个结果为slice数量
+     */
+    private List<Object> getBits(long hash64, int from, int to, boolean withSliceCount) {
+        byte[] rawSlicesKey = rawKey(slicesKey());
+        return redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            if (withSliceCount) {
+                connection.get(rawSlicesKey);
+            }
+            for (int s = from; s < to; s++) {
+                BloomFilterHelper<T> helper = slice(s);
+                byte[] rawKey = rawKey(sliceKey(s));
+                for (int i : helper.murmurHashOffsetBuffer(hash64)) {
+                    connection.getBit(rawKey, i);
+                }
+            }
+            return null;
+        }, STRING_SERIALIZER);
+    }
+
+    private boolean matchAny(long hash64, int from, int to, List<Object> results, int pos) {
+        for (int s = from; s < to; s++) {
+            int numHashFunctions = slice(s).getNumHashFunctions();
+            boolean include = true;
+            for (int i = pos, end = pos + numHashFunctions; i < end; i++) {
+                if (!Boolean.TRUE.equals(results.get(i))) {
+                    include = false;
+                    break;
+                }
+            }
+            if (include) {
+                return true;
+            }
+            pos += numHashFunctions;
+        }
+        return false;
+    }
+
+    /**
+     * slice已满时将slice数量由expected加一（已被其它节点扩容则不处理）
+     */
+    private void grow(int expected) {
+        byte[] rawSlicesKey = rawKey(slicesKey());
+        byte[] arg = String.valueOf(expected).getBytes(StandardCharsets.UTF_8);
+        Long sliceCount = (Long) redisTemplate.execute((RedisCallback<Long>) connection ->
+                connection.eval(GROW_SCRIPT, ReturnType.INTEGER, 1, rawSlicesKey, arg));
+        if (sliceCount != null) {
+            ensureSlices(sliceCount.intValue());
+        }
+    }
+
+    private int sliceCount() {
+        byte[] rawSlicesKey = rawKey(slicesKey());
+        byte[] raw = (byte[]) redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.get(rawSlicesKey));
+        int sliceCount = raw == null ? 1 : Integer.parseInt(new String(raw, StandardCharsets.UTF_8));
+        ensureSlices(sliceCount);
+        return sliceCount;
+    }
+
+    private synchronized int knownSlices() {
+        return slices.size();
+    }
+
+    private synchronized BloomFilterHelper<T> slice(int index) {
+        return slices.get(index);
+    }
+
+    private synchronized void ensureSlices(int sliceCount) {
+        for (int i = slices.size(); i < sliceCount; i++) {
+            double sliceFpp = fpp * (1 - TIGHTENING_RATIO) * Math.pow(TIGHTENING_RATIO, i);
+            slices.add(new BloomFilterHelper<>(hashFunction, capacity(i), sliceFpp));
+        }
+    }
+
+    private int capacity(int index) {
+        return (int) Math.min(Integer.MAX_VALUE, initialCapacity * Math.pow(GROWTH_FACTOR, index));
+    }
+
+    private String slicesKey() {
+        return key + ":slices";
+    }
+
+    private String sliceKey(int index) {
+        return key + ":" + index;
+    }
+
+    private String countKey(int index) {
+        return key + ":" + index + ":count";
+    }
+
+    private byte[] rawKey(String key) {
+        return redisTemplate.getKeySerializer().serialize(key);
+    }
+}
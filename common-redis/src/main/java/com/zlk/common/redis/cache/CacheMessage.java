@@ -0,0 +1,37 @@
+package com.zlk.common.redis.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * @author likuan.zhou
+ * @title: CacheMessage
+ * @projectName common
+ * @description: 二级缓存本地（L1）失效消息，通过redis发布订阅广播到其他节点
+ * @date 2021/10/18/016 19:05
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheMessage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 发送节点标识，节点收到自己发出的消息时忽略
+     */
+    private String origin;
+
+    /**
+     * 缓存名称
+     */
+    private String cacheName;
+
+    /**
+     * 失效的key，为null时清空整个缓存
+     */
+    private String key;
+}
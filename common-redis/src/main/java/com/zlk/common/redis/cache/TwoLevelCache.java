@@ -0,0 +1,198 @@
+package com.zlk.common.redis.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author likuan.zhou
+ * @title: TwoLevelCache
+ * @projectName common
+ * @description: 二级缓存（L1 Caffeine本地缓存 + L2 redis缓存）
+ * 读：先查L1，未命中再查L2并回填L1；写/删：先写L2，再写L1，最后广播失效消息让其他节点删除各自的L1。
+ * L1的key为缓存key的字符串形式（与RedisCache生成redis key的方式一致），便于跨节点按key失效。
+ * 每一级分别记录命中/未命中次数（common.cache.gets）和耗时（common.cache.latency）。
+ * @date 2021/10/18/016 19:05
+ */
+public class TwoLevelCache extends AbstractValueAdaptingCache {
+
+    private final String name;
+
+    private final com.github.benmanes.caffeine.cache.Cache<Object, Object> localCache;
+
+    private final Cache redisCache;
+
+    private final TwoLevelCacheManager cacheManager;
+
+    private final Counter localHit;
+    private final Counter localMiss;
+    private final Counter redisHit;
+    private final Counter redisMiss;
+    private final Timer localLatency;
+    private final Timer redisLatency;
+
+    TwoLevelCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> localCache, Cache redisCache,
+                  boolean allowNullValues, TwoLevelCacheManager cacheManager, MeterRegistry meterRegistry) {
+        super(allowNullValues);
+        this.name = name;
+        this.localCache = localCache;
+        this.redisCache = redisCache;
+        this.cacheManager = cacheManager;
+        this.localHit = counter(meterRegistry, "l1", "hit");
+        this.localMiss = counter(meterRegistry, "l1", "miss");
+        this.redisHit = counter(meterRegistry, "l2", "hit");
+        this.redisMiss = counter(meterRegistry, "l2", "miss");
+        this.localLatency = timer(meterRegistry, "l1");
+        this.redisLatency = timer(meterRegistry, "l2");
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return localCache;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        String localKey = localKey(key);
+        Object value = lookupLocal(localKey);
+        if (value != null) {
+            return value;
+        }
+        ValueWrapper wrapper = lookupRedis(key);
+        if (wrapper == null) {
+            return null;
+        }
+        value = toStoreValue(wrapper.get());
+        localCache.put(localKey, value);
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        String localKey = localKey(key);
+        Object value = lookupLocal(localKey);
+        if (value != null) {
+            return (T) fromStoreValue(value);
+        }
+        // L1的get保证同一JVM内同一个key只有一个线程回源，L2只在回源线程内读取一次
+        return (T) fromStoreValue(localCache.get(localKey, k -> {
+            ValueWrapper wrapper = lookupRedis(key);
+            if (wrapper != null) {
+                return toStoreValue(wrapper.get());
+            }
+            Object loaded;
+            try {
+                loaded = valueLoader.call();
+            } catch (Exception ex) {
+                throw new ValueRetrievalException(key, valueLoader, ex);
+            }
+            redisCache.put(key, loaded);
+            cacheManager.publish(name, localKey);
+            return toStoreValue(loaded);
+        }));
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        redisCache.put(key, value);
+        String localKey = localKey(key);
+        localCache.put(localKey, toStoreValue(value));
+        cacheManager.publish(name, localKey);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = redisCache.putIfAbsent(key, value);
+        String localKey = localKey(key);
+        localCache.put(localKey, toStoreValue(existing == null ? value : existing.get()));
+        if (existing == null) {
+            cacheManager.publish(name, localKey);
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        redisCache.evict(key);
+        String localKey = localKey(key);
+        localCache.invalidate(localKey);
+        cacheManager.publish(name, localKey);
+    }
+
+    @Override
+    public void clear() {
+        redisCache.clear();
+        localCache.invalidateAll();
+        cacheManager.publish(name, null);
+    }
+
+    /**
+     * 仅删除本地L1（收到其他节点的失效消息时调用）
+     * @param localKey L1 key，为null时清空整个L1
+     */
+    void evictLocal(String localKey) {
+        if (localKey == null) {
+            localCache.invalidateAll();
+        } else {
+            localCache.invalidate(localKey);
+        }
+    }
+
+    /**
+     * 查询L1并记录命中/耗时
+     */
+    private Object lookupLocal(String localKey) {
+        long start = System.nanoTime();
+        Object value = localCache.getIfPresent(localKey);
+        localLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (value != null) {
+            localHit.increment();
+        } else {
+            localMiss.increment();
+        }
+        return value;
+    }
+
+    /**
+     * 查询L2并记录命中/耗时（不回填L1）
+     */
+    private ValueWrapper lookupRedis(Object key) {
+        long start = System.nanoTime();
+        ValueWrapper wrapper = redisCache.get(key);
+        redisLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (wrapper != null) {
+            redisHit.increment();
+        } else {
+            redisMiss.increment();
+        }
+        return wrapper;
+    }
+
+    private String localKey(Object key) {
+        return key instanceof String ? (String) key : String.valueOf(key);
+    }
+
+    private Counter counter(MeterRegistry meterRegistry, String level, String result) {
+        return Counter.builder("common.cache.gets")
+                .tag("cache", name).tag("level", level).tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private Timer timer(MeterRegistry meterRegistry, String level) {
+        return Timer.builder("common.cache.latency")
+                .tag("cache", name).tag("level", level)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+}
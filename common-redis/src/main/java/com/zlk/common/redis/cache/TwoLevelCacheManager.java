@@ -0,0 +1,120 @@
+package com.zlk.common.redis.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author likuan.zhou
+ * @title: TwoLevelCacheManager
+ * @projectName common
+ * @description: 二级缓存管理器（L1 Caffeine + L2 redis），同时作为失效消息的监听器
+ * 本节点写/删缓存后向topic广播{@link CacheMessage}，其他节点收到后删除各自的L1，L2由redis自身保证一致。
+ * @date 2021/10/18/016 19:05
+ */
+@Slf4j
+public class TwoLevelCacheManager implements CacheManager, MessageListener {
+
+    private final ConcurrentMap<String, TwoLevelCache> cacheMap = new ConcurrentHashMap<>();
+
+    private final RedisCacheManager redisCacheManager;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private final MeterRegistry meterRegistry;
+
+    private final String topic;
+
+    private final long localMaximumSize;
+
+    private final long localExpireAfterWrite;
+
+    private final boolean allowNullValues;
+
+    /**
+     * 本节点标识
+     */
+    private final String origin = UUID.randomUUID().toString();
+
+    /**
+     * @param redisCacheManager L2缓存管理器
+     * @param redisTemplate 用于发布失效消息（消息按redisTemplate的value序列化方式序列化）
+     * @param meterRegistry 指标注册
+     * @param topic 失效消息topic
+     * @param localMaximumSize L1每个缓存的最大条数
+     * @param localExpireAfterWrite L1写入后过期时间（单位秒），应小于L2的过期时间
+     * @param allowNullValues 是否缓存null值（需与L2配置一致）
+     */
+    public TwoLevelCacheManager(RedisCacheManager redisCacheManager, RedisTemplate<String, Object> redisTemplate,
+                                MeterRegistry meterRegistry, String topic, long localMaximumSize,
+                                long localExpireAfterWrite, boolean allowNullValues) {
+        this.redisCacheManager = redisCacheManager;
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.topic = topic;
+        this.localMaximumSize = localMaximumSize;
+        this.localExpireAfterWrite = localExpireAfterWrite;
+        this.allowNullValues = allowNullValues;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return cacheMap.computeIfAbsent(name, cacheName -> new TwoLevelCache(cacheName,
+                Caffeine.newBuilder()
+                        .maximumSize(localMaximumSize)
+                        .expireAfterWrite(localExpireAfterWrite, TimeUnit.SECONDS)
+                        .build(),
+                redisCacheManager.getCache(cacheName), allowNullValues, this, meterRegistry));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(cacheMap.keySet());
+    }
+
+    /**
+     * 广播L1失效消息，发送失败只记录日志（其他节点的L1最迟在过期后失效）
+     * @param cacheName 缓存名称
+     * @param key L1 key，为null时清空整个缓存
+     */
+    void publish(String cacheName, String key) {
+        try {
+            redisTemplate.convertAndSend(topic, new CacheMessage(origin, cacheName, key));
+        } catch (Exception ex) {
+            log.error("发布二级缓存失效消息失败。cacheName:{},key:{}", cacheName, key, ex);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+            if (!(body instanceof CacheMessage)) {
+                return;
+            }
+            CacheMessage cacheMessage = (CacheMessage) body;
+            if (origin.equals(cacheMessage.getOrigin())) {
+                return;
+            }
+            TwoLevelCache cache = cacheMap.get(cacheMessage.getCacheName());
+            if (cache != null) {
+                cache.evictLocal(cacheMessage.getKey());
+            }
+        } catch (Exception ex) {
+            log.error("处理二级缓存失效消息失败。", ex);
+        }
+    }
+}
@@ -1,11 +1,12 @@
 package com.zlk.common.redis.config;
 
-import com.google.common.base.Charsets;
-import com.google.common.hash.Funnel;
 import com.zlk.common.redis.bloom.BloomFilterHelper;
+import com.zlk.common.redis.bloom.Murmur3;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.function.ToLongFunction;
+
 /**
  * @author likuan.zhou
  * @title: RedisConfig
@@ -17,9 +18,11 @@ import org.springframework.context.annotation.Configuration;
 public class BloomFilterConfig {
 
     //初始化布隆过滤器，放入到spring容器里面
+    //原Funnel为(from, into) -> into.putString(from, UTF_8).putString(from, UTF_8)，字符串写入两次；
+    //为兼容已写入redis的位数组，无内存分配的Murmur3同样按两次写入计算，结果与原Funnel逐位一致
     @Bean
     public BloomFilterHelper<String> initBloomFilterHelper() {
-        return new BloomFilterHelper<>((Funnel<String>) (from, into) -> into.putString(from, Charsets.UTF_8).putString(from, Charsets.UTF_8), 1000000, 0.01);
+        return new BloomFilterHelper<>((ToLongFunction<String>) value -> Murmur3.hash64(value, 2), 1000000, 0.01);
     }
 
 }
@@ -0,0 +1,100 @@
+package com.zlk.common.redis.config;
+
+import org.springframework.aop.framework.ReflectiveMethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author likuan.zhou
+ * @title: InterceptingRedisTemplate
+ * @projectName common
+ * @description: 对连接上的命令应用RedisCommandInterceptor的RedisTemplate，覆盖redisTemplate的所有调用（含RedisUtil、管道、lua脚本）
+ * 拦截器链、连接类实现的接口和每个方法是否为命令只在第一次计算后缓存，每次取连接只创建一个轻量的jdk代理；
+ * 连接生命周期/管道/事务状态等非命令方法（close、isPipelined、openPipeline、xxxCommands()等）直接调用，不经过拦截器。
+ * @date 2021/10/18/016 19:05
+ */
+class InterceptingRedisTemplate<K, V> extends RedisTemplate<K, V> {
+
+    /**
+     * RedisConnection上不是redis命令的方法
+     */
+    private static final Set<String> NON_COMMAND_METHODS = new HashSet<>(Arrays.asList(
+            "close", "isClosed", "getNativeConnection", "isQueueing", "isPipelined", "openPipeline", "closePipeline",
+            "getSentinelConnection", "isSubscribed", "getSubscription"));
+
+    private final List<Object> interceptors;
+
+    /**
+     * 连接类 -> 代理需要实现的接口
+     */
+    private final Map<Class<?>, Class<?>[]> proxyInterfaces = new ConcurrentHashMap<>();
+
+    /**
+     * 方法 -> 是否为命令
+     */
+    private final Map<Method, Boolean> commandMethods = new ConcurrentHashMap<>();
+
+    InterceptingRedisTemplate(List<RedisCommandInterceptor> interceptors) {
+        this.interceptors = Collections.unmodifiableList(new ArrayList<>(interceptors));
+    }
+
+    @Override
+    protected RedisConnection preProcessConnection(RedisConnection connection, boolean existingConnection) {
+        RedisConnection target = super.preProcessConnection(connection, existingConnection);
+        Class<?> targetClass = target.getClass();
+        Class<?>[] interfaces = proxyInterfaces.computeIfAbsent(targetClass,
+                c -> ClassUtils.getAllInterfacesForClass(c, c.getClassLoader()));
+        return (RedisConnection) Proxy.newProxyInstance(targetClass.getClassLoader(), interfaces,
+                new CommandInvocationHandler(target));
+    }
+
+    /**
+     * 是否为redis命令：Object的方法、NON_COMMAND_METHODS和无参的xxxCommands()（返回命令分组对象）不是命令
+     */
+    boolean isCommand(Method method) {
+        return commandMethods.computeIfAbsent(method, m -> m.getDeclaringClass() != Object.class
+                && !NON_COMMAND_METHODS.contains(m.getName())
+                && !(m.getParameterCount() == 0 && m.getName().endsWith("Commands")));
+    }
+
+    private class CommandInvocationHandler implements InvocationHandler {
+
+        private final RedisConnection target;
+
+        CommandInvocationHandler(RedisConnection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!isCommand(method)) {
+                return AopUtils.invokeJoinpointUsingReflection(target, method, args);
+            }
+            return new CommandInvocation(proxy, target, method, args, interceptors).proceed();
+        }
+    }
+
+    /**
+     * 复用spring aop的拦截器链调用（依次调用拦截器，最后反射调用连接的方法）
+     */
+    private static class CommandInvocation extends ReflectiveMethodInvocation {
+
+        CommandInvocation(Object proxy, Object target, Method method, Object[] arguments, List<Object> interceptors) {
+            super(proxy, target, method, arguments, target.getClass(), interceptors);
+        }
+    }
+}
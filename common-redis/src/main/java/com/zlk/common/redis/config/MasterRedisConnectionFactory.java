@@ -0,0 +1,72 @@
+package com.zlk.common.redis.config;
+
+import io.lettuce.core.ReadFrom;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
+
+/**
+ * @author likuan.zhou
+ * @title: MasterRedisConnectionFactory
+ * @projectName common
+ * @description: 读写分离时masterRedisTemplate使用的连接工厂：与redisConnectionFactory连接同一个redis（单机/哨兵/集群），读请求只走主库
+ * 复制原连接工厂的客户端配置（超时、ssl、clientResources、连接池等），只把readFrom改为主库。
+ * 作为单独的bean由spring管理初始化和关闭；本身不实现RedisConnectionFactory，
+ * 避免spring boot的redisConnectionFactory（@ConditionalOnMissingBean）因存在该bean而不再创建。
+ * @date 2021/10/18/016 19:05
+ */
+public class MasterRedisConnectionFactory implements InitializingBean, DisposableBean {
+
+    private final LettuceConnectionFactory connectionFactory;
+
+    MasterRedisConnectionFactory(LettuceConnectionFactory factory) {
+        LettuceClientConfiguration clientConfiguration = factory.getClientConfiguration();
+        LettuceClientConfiguration.LettuceClientConfigurationBuilder builder = clientConfiguration instanceof LettucePoolingClientConfiguration
+                ? poolingBuilder((LettucePoolingClientConfiguration) clientConfiguration) : LettuceClientConfiguration.builder();
+        builder.readFrom(ReadFrom.MASTER)
+                .commandTimeout(clientConfiguration.getCommandTimeout())
+                .shutdownTimeout(clientConfiguration.getShutdownTimeout());
+        clientConfiguration.getClientResources().ifPresent(builder::clientResources);
+        clientConfiguration.getClientOptions().ifPresent(builder::clientOptions);
+        clientConfiguration.getClientName().ifPresent(builder::clientName);
+        if (clientConfiguration.isUseSsl()) {
+            LettuceClientConfiguration.LettuceSslClientConfigurationBuilder sslBuilder = builder.useSsl();
+            if (!clientConfiguration.isVerifyPeer()) {
+                sslBuilder.disablePeerVerification();
+            }
+            if (clientConfiguration.isStartTls()) {
+                sslBuilder.startTls();
+            }
+        }
+        if (factory.getSentinelConfiguration() != null) {
+            connectionFactory = new LettuceConnectionFactory(factory.getSentinelConfiguration(), builder.build());
+        } else if (factory.getClusterConfiguration() != null) {
+            connectionFactory = new LettuceConnectionFactory(factory.getClusterConfiguration(), builder.build());
+        } else {
+            connectionFactory = new LettuceConnectionFactory(factory.getStandaloneConfiguration(), builder.build());
+        }
+    }
+
+    /**
+     * 保留原连接工厂的连接池配置（spring.redis.lettuce.pool），单独的方法避免没有commons-pool2时加载连接池配置类
+     */
+    private static LettuceClientConfiguration.LettuceClientConfigurationBuilder poolingBuilder(LettucePoolingClientConfiguration clientConfiguration) {
+        return LettucePoolingClientConfiguration.builder().poolConfig(clientConfiguration.getPoolConfig());
+    }
+
+    public LettuceConnectionFactory getConnectionFactory() {
+        return connectionFactory;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        connectionFactory.afterPropertiesSet();
+    }
+
+    @Override
+    public void destroy() {
+        connectionFactory.destroy();
+    }
+}
@@ -0,0 +1,15 @@
+package com.zlk.common.redis.config;
+
+import org.aopalliance.intercept.MethodInterceptor;
+
+/**
+ * @author likuan.zhou
+ * @title: RedisCommandInterceptor
+ * @projectName common
+ * @description: redis命令拦截器
+ * 注册为spring bean后，redisTemplate每次使用的连接都会被代理，连接上的每个命令（RedisConnection的方法调用）都经过拦截器，
+ * 按@Order/Ordered排序。没有拦截器时不做代理。
+ * @date 2021/10/18/016 19:05
+ */
+public interface RedisCommandInterceptor extends MethodInterceptor {
+}
@@ -4,15 +4,35 @@ import com.alibaba.fastjson.support.spring.FastJsonRedisSerializer;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zlk.common.redis.serializer.CompressingRedisSerializer;
+import com.zlk.common.redis.serializer.KryoRedisSerializer;
+import io.lettuce.core.ReadFrom;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.data.redis.LettuceClientConfigurationBuilderCustomizer;
 import org.springframework.cache.annotation.CachingConfigurerSupport;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.*;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 /**
  * @author likuan.zhou
  * @title: RedisConfig
@@ -26,17 +46,48 @@ import org.springframework.data.redis.serializer.StringRedisSerializer;
 public class RedisConfig extends CachingConfigurerSupport {
 
     /**
-     * retemplate相关配置
-     * @param factory
+     * value序列化方式：jackson（默认，json+类名）、kryo（二进制）
+     */
+    @Value("${common.redis.serializer.type:jackson}")
+    private String serializerType;
+    /**
+     * kryo注册类（逗号分隔的全限定名，按顺序分配注册ID，所有节点需一致）
+     */
+    @Value("${common.redis.serializer.kryo-classes:}")
+    private String[] kryoClasses;
+    /**
+     * 是否开启value压缩（LZ4），开启后可读取压缩与未压缩的数据
+     */
+    @Value("${common.redis.compression.enabled:false}")
+    private boolean compressionEnabled;
+    /**
+     * 序列化结果超过该字节数才压缩
+     */
+    @Value("${common.redis.compression.threshold:4096}")
+    private int compressionThreshold;
+    /**
+     * 读写分离：读请求的节点（replica-preferred、nearest等，见readFrom），不配置时读写都走主库
+     */
+    @Value("${common.redis.read-from:}")
+    private String readFrom;
+
+    /**
+     * redis value序列化（redisTemplate和缓存共用）
+     * @param meterRegistry
      * @return
      */
     @Bean
-    public RedisTemplate<String,Object> redisTemplate(RedisConnectionFactory factory) {
-        RedisTemplate<String,Object> redisTemplate = new RedisTemplate<>();
-        // 配置连接工厂
-        redisTemplate.setConnectionFactory(factory);
+    public RedisSerializer<Object> redisValueSerializer(ObjectProvider<MeterRegistry> meterRegistry) {
+        RedisSerializer<Object> serializer = "kryo".equalsIgnoreCase(serializerType) ? new KryoRedisSerializer(kryoClasses) : jacksonSerializer();
+        if (compressionEnabled) {
+            return new CompressingRedisSerializer(serializer, compressionThreshold, meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+        }
+        return serializer;
+    }
+
+    private RedisSerializer<Object> jacksonSerializer() {
         //使用Jackson2JsonRedisSerializer来序列化和反序列化redis的value值（默认使用JDK的序列化方式）
-        Jackson2JsonRedisSerializer jacksonSeial = new Jackson2JsonRedisSerializer(Object.class);
+        Jackson2JsonRedisSerializer<Object> jacksonSeial = new Jackson2JsonRedisSerializer<>(Object.class);
 
         ObjectMapper om = new ObjectMapper();
         // 指定要序列化的域，field,get和set,以及修饰符范围，ANY是都有包括private和public
@@ -44,28 +95,153 @@ public class RedisConfig extends CachingConfigurerSupport {
         // 指定序列化输入的类型，类必须是非final修饰的，final修饰的类，比如String,Integer等会跑出异常
         om.enableDefaultTyping(ObjectMapper.DefaultTyping.NON_FINAL);
         jacksonSeial.setObjectMapper(om);
+        return jacksonSeial;
+    }
 
+    /**
+     * retemplate相关配置
+     * @param factory
+     * @param redisValueSerializer
+     * @param commandInterceptors
+     * @return
+     */
+    @Bean
+    public RedisTemplate<String,Object> redisTemplate(RedisConnectionFactory factory, RedisSerializer<Object> redisValueSerializer,
+                                                     ObjectProvider<RedisCommandInterceptor> commandInterceptors) {
+        // 有命令拦截器（热点key探测、命令指标）时，使用拦截连接命令的redisTemplate
+        List<RedisCommandInterceptor> interceptors = commandInterceptors.orderedStream().collect(Collectors.toList());
+        return createRedisTemplate(factory, redisValueSerializer, interceptors);
+    }
 
-        FastJsonRedisSerializer<Object> fastJsonRedisSerializer = new FastJsonRedisSerializer<>(Object.class);
-        // 全局开启AutoType，不建议使用
-        // ParserConfig.getGlobalInstance().setAutoTypeSupport(true);
-        // 建议使用这种方式，小范围指定白名单
-        //ParserConfig.getGlobalInstance().addAccept("com.xiaolyuh.");
+    /**
+     * 主库redisTemplate（不参与按类型注入，通过@Resource(name = "masterRedisTemplate")使用）
+     * 配置了读写分离（common.redis.read-from）时，读请求也只走主库，供锁检查等强一致的读取；未配置时即为redisTemplate
+     * @param factory
+     * @param redisTemplate
+     * @param redisValueSerializer
+     * @param commandInterceptors
+     * @return
+     */
+    @Bean(autowireCandidate = false)
+    public RedisTemplate<String,Object> masterRedisTemplate(RedisConnectionFactory factory, RedisTemplate<String,Object> redisTemplate,
+                                                           RedisSerializer<Object> redisValueSerializer,
+                                                           ObjectProvider<RedisCommandInterceptor> commandInterceptors) {
+        if (StringUtils.isBlank(readFrom) || !(factory instanceof LettuceConnectionFactory)) {
+            return redisTemplate;
+        }
+        return createRedisTemplate(masterRedisConnectionFactory(factory).getConnectionFactory(), redisValueSerializer,
+                commandInterceptors.orderedStream().collect(Collectors.toList()));
+    }
 
-        // 值采用json序列化
-        redisTemplate.setValueSerializer(jacksonSeial);
+    /**
+     * 读写分离：redisTemplate的读请求按common.redis.read-from路由到从库，写请求仍走主库
+     * 哨兵、集群以及单机（自动发现从库）模式均生效
+     * @return
+     */
+    @Bean
+    @Conditional(ReadFromConfigured.class)
+    public LettuceClientConfigurationBuilderCustomizer readFromCustomizer() {
+        ReadFrom from = readFrom(readFrom);
+        return builder -> builder.readFrom(from);
+    }
+
+    /**
+     * masterRedisTemplate使用的主库连接工厂（配置了读写分离时创建，由spring负责初始化和关闭）
+     * 不参与按类型注入，由masterRedisTemplate直接引用
+     * @param factory
+     * @return
+     */
+    @Bean(autowireCandidate = false)
+    @Conditional(ReadFromConfigured.class)
+    public MasterRedisConnectionFactory masterRedisConnectionFactory(RedisConnectionFactory factory) {
+        if (!(factory instanceof LettuceConnectionFactory)) {
+            throw new IllegalStateException("common.redis.read-from只支持lettuce连接工厂：" + factory.getClass().getName());
+        }
+        return new MasterRedisConnectionFactory((LettuceConnectionFactory) factory);
+    }
+
+    private RedisTemplate<String,Object> createRedisTemplate(RedisConnectionFactory factory, RedisSerializer<Object> redisValueSerializer,
+                                                             List<RedisCommandInterceptor> interceptors) {
+        RedisTemplate<String,Object> redisTemplate = interceptors.isEmpty() ? new RedisTemplate<>() : new InterceptingRedisTemplate<>(interceptors);
+        // 配置连接工厂
+        redisTemplate.setConnectionFactory(factory);
+
+        // 值采用redisValueSerializer序列化
+        redisTemplate.setValueSerializer(redisValueSerializer);
         //使用StringRedisSerializer来序列化和反序列化redis的key值
         redisTemplate.setKeySerializer(new StringRedisSerializer());
 
         // 设置hash key 和value序列化模式(new StringRedisSerializer()指定hash中map的key为string，本处未使用)
         //redisTemplate.setHashKeySerializer(new StringRedisSerializer());
-        redisTemplate.setHashKeySerializer(fastJsonRedisSerializer);
-        redisTemplate.setHashValueSerializer(jacksonSeial);
+        redisTemplate.setHashKeySerializer(hashKeySerializer(redisValueSerializer));
+        redisTemplate.setHashValueSerializer(redisValueSerializer);
         redisTemplate.afterPropertiesSet();
 
         return redisTemplate;
     }
 
+    /**
+     * master、master-preferred、replica-preferred（slave-preferred）、replica（slave）、nearest
+     */
+    private static ReadFrom readFrom(String readFrom) {
+        switch (readFrom.trim().toLowerCase()) {
+            case "master":
+                return ReadFrom.MASTER;
+            case "master-preferred":
+                return ReadFrom.MASTER_PREFERRED;
+            case "replica-preferred":
+            case "slave-preferred":
+                return ReadFrom.SLAVE_PREFERRED;
+            case "replica":
+            case "slave":
+                return ReadFrom.SLAVE;
+            case "nearest":
+                return ReadFrom.NEAREST;
+            default:
+                throw new IllegalArgumentException("不支持的common.redis.read-from：" + readFrom);
+        }
+    }
+
+    /**
+     * 配置了非空的common.redis.read-from（@ConditionalOnProperty对空值"common.redis.read-from="也会匹配）
+     */
+    static class ReadFromConfigured implements Condition {
+
+        @Override
+        public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+            return StringUtils.isNotBlank(context.getEnvironment().getProperty("common.redis.read-from"));
+        }
+    }
+
+    /**
+     * 响应式redisTemplate（非阻塞，供RedisAsyncUtil使用），序列化方式与redisTemplate一致
+     * @param factory
+     * @param redisValueSerializer
+     * @return
+     */
+    @Bean
+    public ReactiveRedisTemplate<String,Object> reactiveRedisTemplate(ReactiveRedisConnectionFactory factory, RedisSerializer<Object> redisValueSerializer) {
+        RedisSerializationContext<String,Object> serializationContext = RedisSerializationContext
+                .<String,Object>newSerializationContext(new StringRedisSerializer())
+                .value(redisValueSerializer)
+                .hashKey(hashKeySerializer(redisValueSerializer))
+                .hashValue(redisValueSerializer)
+                .build();
+        return new ReactiveRedisTemplate<>(factory, serializationContext);
+    }
+
+    private RedisSerializer<?> hashKeySerializer(RedisSerializer<Object> redisValueSerializer) {
+        if ("kryo".equalsIgnoreCase(serializerType)) {
+            // 二进制模式下hash key同样使用kryo，不再走fastjson
+            return redisValueSerializer;
+        }
+        // 全局开启AutoType，不建议使用
+        // ParserConfig.getGlobalInstance().setAutoTypeSupport(true);
+        // 建议使用这种方式，小范围指定白名单
+        //ParserConfig.getGlobalInstance().addAccept("com.xiaolyuh.");
+        return new FastJsonRedisSerializer<>(Object.class);
+    }
+
     /**
      * 对hash类型的数据操作
      * @param redisTemplate
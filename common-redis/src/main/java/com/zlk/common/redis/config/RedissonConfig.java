@@ -3,53 +3,211 @@ package com.zlk.common.redis.config;
 import org.apache.commons.lang3.StringUtils;
 import org.redisson.Redisson;
 import org.redisson.api.RedissonClient;
+import org.redisson.config.BaseMasterSlaveServersConfig;
 import org.redisson.config.Config;
+import org.redisson.config.ReadMode;
+import org.redisson.config.SubscriptionMode;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.Arrays;
+
 /**
  * @author likuan.zhou
  * @title: RedisConfig
  * @projectName common
  * @description: Redisson分布式锁-配置类
+ * 通过common.redis.redisson.mode选择部署模式：
+ * single：单机，地址为spring.redis.host/port；
+ * sentinel：哨兵，nodes为哨兵地址，master-name为主节点名称；
+ * master-slave：主从，master-address为主库地址，nodes为从库地址；
+ * cluster：集群，nodes为集群节点地址。
+ * 地址多个用逗号分隔，未带协议时补"redis://"（可以用"rediss://"来启用SSL连接）。
+ * 主从/哨兵/集群模式下read-mode=SLAVE时读请求走从库，主库只承担写；连接池按节点分别配置。
  * @date 2021/9/16/016 19:05
  */
 @Configuration
 public class RedissonConfig {
 
-    @Value("${spring.redis.host}")
+    @Value("${spring.redis.host:127.0.0.1}")
     private String host;
-    @Value("${spring.redis.port}")
+    @Value("${spring.redis.port:6379}")
     private String port;
     @Value("${spring.redis.password:}")
     private String password;
+    @Value("${spring.redis.database:0}")
+    private int database;
+
+    /**
+     * 部署模式：single/sentinel/master-slave/cluster
+     */
+    @Value("${common.redis.redisson.mode:single}")
+    private String mode;
+    /**
+     * 节点地址（哨兵地址/从库地址/集群节点地址），逗号分隔
+     */
+    @Value("${common.redis.redisson.nodes:}")
+    private String[] nodes;
+    /**
+     * 哨兵模式的主节点名称
+     */
+    @Value("${common.redis.redisson.master-name:mymaster}")
+    private String masterName;
+    /**
+     * 主从模式的主库地址
+     */
+    @Value("${common.redis.redisson.master-address:}")
+    private String masterAddress;
+    /**
+     * 集群拓扑扫描间隔（单位毫秒）
+     */
+    @Value("${common.redis.redisson.scan-interval:2000}")
+    private int scanInterval;
+
+    //==========================线程==============================
+    /**
+     * 处理回调/监听的线程数，0为cpu核数*2
+     */
+    @Value("${common.redis.redisson.threads:0}")
+    private int threads;
+    /**
+     * netty io线程数，0为cpu核数*2
+     */
+    @Value("${common.redis.redisson.netty-threads:0}")
+    private int nettyThreads;
+
+    //==========================连接池==============================
+    /**
+     * 每个节点（单机/主库/每个从库）的连接池大小
+     */
+    @Value("${common.redis.redisson.connection-pool-size:64}")
+    private int connectionPoolSize;
+    /**
+     * 每个节点的最小空闲连接数
+     */
+    @Value("${common.redis.redisson.connection-minimum-idle-size:10}")
+    private int connectionMinimumIdleSize;
+    /**
+     * 订阅（锁释放通知、topic）连接池大小
+     */
+    @Value("${common.redis.redisson.subscription-connection-pool-size:50}")
+    private int subscriptionConnectionPoolSize;
+    /**
+     * 订阅连接最小空闲连接数
+     */
+    @Value("${common.redis.redisson.subscription-connection-minimum-idle-size:1}")
+    private int subscriptionConnectionMinimumIdleSize;
+    /**
+     * 空闲连接超时时间（单位毫秒）
+     */
+    @Value("${common.redis.redisson.idle-connection-timeout:10000}")
+    private int idleConnectionTimeout;
+    /**
+     * 命令等待超时时间（单位毫秒）
+     */
+    @Value("${common.redis.redisson.timeout:3000}")
+    private int timeout;
+
+    //==========================读写分离==============================
+    /**
+     * 读操作的节点：SLAVE（从库）/MASTER（主库）/MASTER_SLAVE（主从都读）
+     */
+    @Value("${common.redis.redisson.read-mode:SLAVE}")
+    private ReadMode readMode;
+    /**
+     * 订阅的节点：SLAVE/MASTER
+     */
+    @Value("${common.redis.redisson.subscription-mode:MASTER}")
+    private SubscriptionMode subscriptionMode;
 
     @Bean
     public RedissonClient getRedisson(){
         Config config = new Config();
-        //单机模式  依次设置redis地址和密码.其余配置未加
-        config.useSingleServer().
-                setAddress("redis://"+host+":"+port);
-        if (StringUtils.isEmpty(password)) {
-            config.useSingleServer().setPassword(null);
-        } else {
-            config.useSingleServer().setPassword(password);
+        config.setThreads(threads);
+        config.setNettyThreads(nettyThreads);
+        switch (mode) {
+            case "single":
+                //单机模式
+                config.useSingleServer()
+                        .setAddress(address(host + ":" + port))
+                        .setDatabase(database)
+                        .setConnectionPoolSize(connectionPoolSize)
+                        .setConnectionMinimumIdleSize(connectionMinimumIdleSize)
+                        .setSubscriptionConnectionPoolSize(subscriptionConnectionPoolSize)
+                        .setSubscriptionConnectionMinimumIdleSize(subscriptionConnectionMinimumIdleSize)
+                        .setPassword(password())
+                        .setIdleConnectionTimeout(idleConnectionTimeout)
+                        .setTimeout(timeout);
+                break;
+            case "sentinel":
+                //哨兵模式(一主多从多哨兵)
+                applyMasterSlave(config.useSentinelServers()
+                        .setMasterName(masterName)
+                        .addSentinelAddress(addresses())
+                        .setDatabase(database)
+                        .setPassword(password())
+                        .setIdleConnectionTimeout(idleConnectionTimeout)
+                        .setTimeout(timeout));
+                break;
+            case "master-slave":
+                // 主库提供写能力，然后主库复制到从库，从库提供读能力。
+                applyMasterSlave(config.useMasterSlaveServers()
+                        .setMasterAddress(address(masterAddress))
+                        .addSlaveAddress(addresses())
+                        .setDatabase(database)
+                        .setPassword(password())
+                        .setIdleConnectionTimeout(idleConnectionTimeout)
+                        .setTimeout(timeout));
+                break;
+            case "cluster":
+                // 集群模式配置（多主搭配多从） setScanInterval()扫描间隔时间，单位是毫秒
+                applyMasterSlave(config.useClusterServers()
+                        .setScanInterval(scanInterval)
+                        .addNodeAddress(addresses())
+                        .setPassword(password())
+                        .setIdleConnectionTimeout(idleConnectionTimeout)
+                        .setTimeout(timeout));
+                break;
+            default:
+                throw new IllegalArgumentException("不支持的redisson部署模式：" + mode);
         }
+        return Redisson.create(config);
+    }
 
-        //哨兵模式(一主两从三哨兵)
-        /*config.useSentinelServers()
-                .setMasterName("mymaster")
-                //可以用"rediss://"来启用SSL连接
-                .addSentinelAddress("127.0.0.1:26389", "127.0.0.1:26379")
-                .addSentinelAddress("127.0.0.1:26319");*/
+    /**
+     * 主从/哨兵/集群的公共配置：连接池按主库、从库分别设置，读写分离
+     */
+    private void applyMasterSlave(BaseMasterSlaveServersConfig<?> serversConfig) {
+        serversConfig.setMasterConnectionPoolSize(connectionPoolSize)
+                .setMasterConnectionMinimumIdleSize(connectionMinimumIdleSize)
+                .setSlaveConnectionPoolSize(connectionPoolSize)
+                .setSlaveConnectionMinimumIdleSize(connectionMinimumIdleSize)
+                .setSubscriptionConnectionPoolSize(subscriptionConnectionPoolSize)
+                .setSubscriptionConnectionMinimumIdleSize(subscriptionConnectionMinimumIdleSize)
+                .setReadMode(readMode)
+                .setSubscriptionMode(subscriptionMode);
+    }
 
-        // 主库提供写能力，然后主库复制到从库，从库提供读能力。
-        // config.useMasterSlaveServers().setMasterAddress("").setPassword("").addSlaveAddress(new String[]{"",""});
+    /**
+     * 未配置密码时为null（redisson不发送AUTH）
+     */
+    private String password() {
+        return StringUtils.isEmpty(password) ? null : password;
+    }
 
-        // 集群模式配置（多主搭配多从） setScanInterval()扫描间隔时间，单位是毫秒, //可以用"rediss://"来启用SSL连接
-        // config.useClusterServers().setScanInterval(2000).addNodeAddress("redis://127.0.0.1:7000", "redis://127.0.0.1:7001").addNodeAddress("redis://127.0.0.1:7002");
-        return Redisson.create(config);
+    private String[] addresses() {
+        if (nodes == null || nodes.length == 0) {
+            throw new IllegalArgumentException("redisson " + mode + "模式需配置common.redis.redisson.nodes");
+        }
+        return Arrays.stream(nodes).map(String::trim).filter(StringUtils::isNotEmpty).map(this::address).toArray(String[]::new);
+    }
+
+    private String address(String address) {
+        if (StringUtils.isEmpty(address)) {
+            throw new IllegalArgumentException("redisson " + mode + "模式的节点地址不能为空");
+        }
+        return address.contains("://") ? address : "redis://" + address;
     }
 
 }
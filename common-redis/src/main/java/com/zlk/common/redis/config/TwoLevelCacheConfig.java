@@ -0,0 +1,83 @@
+package com.zlk.common.redis.config;
+
+import com.zlk.common.redis.cache.TwoLevelCacheManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.Duration;
+
+/**
+ * @author likuan.zhou
+ * @title: TwoLevelCacheConfig
+ * @projectName common
+ * @description: 二级缓存（Caffeine + redis）-配置类，为RedisConfig开启的@EnableCaching提供CacheManager
+ * @date 2021/10/18/016 19:05
+ */
+@Configuration
+public class TwoLevelCacheConfig {
+
+    /**
+     * L1失效消息topic
+     */
+    @Value("${common.redis.cache.topic:common:cache:invalidate}")
+    private String topic;
+    /**
+     * L1每个缓存的最大条数
+     */
+    @Value("${common.redis.cache.local.maximum-size:10000}")
+    private long localMaximumSize;
+    /**
+     * L1写入后过期时间（单位秒）
+     */
+    @Value("${common.redis.cache.local.expire-after-write:60}")
+    private long localExpireAfterWrite;
+    /**
+     * L2过期时间（单位秒）
+     */
+    @Value("${common.redis.cache.time-to-live:3600}")
+    private long timeToLive;
+    /**
+     * 是否缓存null值（防缓存穿透）
+     */
+    @Value("${common.redis.cache.allow-null-values:true}")
+    private boolean allowNullValues;
+
+    @Bean
+    public TwoLevelCacheManager cacheManager(RedisConnectionFactory factory, RedisTemplate<String, Object> redisTemplate,
+                                             RedisSerializer<Object> redisValueSerializer, ObjectProvider<MeterRegistry> meterRegistry) {
+        // L2与redisTemplate使用同一个value序列化
+        RedisCacheConfiguration configuration = RedisCacheConfiguration.defaultCacheConfig()
+                .entryTtl(Duration.ofSeconds(timeToLive))
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(redisValueSerializer));
+        if (!allowNullValues) {
+            configuration = configuration.disableCachingNullValues();
+        }
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(factory).cacheDefaults(configuration).build();
+        redisCacheManager.afterPropertiesSet();
+        return new TwoLevelCacheManager(redisCacheManager, redisTemplate, meterRegistry.getIfAvailable(() -> Metrics.globalRegistry),
+                topic, localMaximumSize, localExpireAfterWrite, allowNullValues);
+    }
+
+    /**
+     * 订阅L1失效消息
+     */
+    @Bean
+    public RedisMessageListenerContainer cacheMessageListenerContainer(RedisConnectionFactory factory, TwoLevelCacheManager cacheManager) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(factory);
+        container.addMessageListener(cacheManager, new ChannelTopic(topic));
+        return container;
+    }
+}
@@ -0,0 +1,41 @@
+package com.zlk.common.redis.hotkey;
+
+import com.zlk.common.redis.config.RedisCommandInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * @author likuan.zhou
+ * @title: HotKeyCommandInterceptor
+ * @projectName common
+ * @description: 热点key记录：命令的第一个参数为key时交给HotKeyDetector采样记录
+ * @date 2021/10/18/016 19:05
+ */
+@Component
+@ConditionalOnProperty(prefix = "common.redis.hotkey", name = "enabled", havingValue = "true")
+public class HotKeyCommandInterceptor implements RedisCommandInterceptor {
+
+    /**
+     * 第一个参数不是key的命令
+     */
+    private static final Set<String> NON_KEY_COMMANDS = new HashSet<>(Arrays.asList(
+            "eval", "evalSha", "scriptLoad", "scriptExists", "publish", "subscribe", "pSubscribe", "echo", "bitOp"));
+
+    @Autowired
+    private HotKeyDetector hotKeyDetector;
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Object[] args = invocation.getArguments();
+        if (args.length > 0 && args[0] instanceof byte[] && !NON_KEY_COMMANDS.contains(invocation.getMethod().getName())) {
+            hotKeyDetector.record((byte[]) args[0]);
+        }
+        return invocation.proceed();
+    }
+}
@@ -0,0 +1,192 @@
+package com.zlk.common.redis.hotkey;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * @author likuan.zhou
+ * @title: HotKeyDetector
+ * @projectName common
+ * @description: 热点key探测（采样 + Space-Saving top-K）
+ * 按采样率记录key访问，用固定数量的计数器（Space-Saving算法）估算访问最多的key，每个统计窗口结束时换算为每秒访问次数，
+ * 前top个key通过指标common.redis.hotkey.rate{key}暴露，超过阈值的key标记为热点key（供HotKeyLocalCache本地缓存）。
+ * common.redis.hotkey.enabled=true时生效，redisTemplate的所有key命令都会被记录（HotKeyCommandInterceptor）。
+ * @date 2021/10/18/016 19:05
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "common.redis.hotkey", name = "enabled", havingValue = "true")
+public class HotKeyDetector {
+
+    /**
+     * 采样率（0~1）
+     */
+    @Value("${common.redis.hotkey.sample-rate:0.01}")
+    private double sampleRate;
+    /**
+     * 计数器数量（Space-Saving的容量），应远大于top
+     */
+    @Value("${common.redis.hotkey.capacity:200}")
+    private int capacity;
+    /**
+     * 暴露指标的key数量
+     */
+    @Value("${common.redis.hotkey.top:10}")
+    private int top;
+    /**
+     * 统计窗口（单位秒）
+     */
+    @Value("${common.redis.hotkey.window:10}")
+    private long window;
+    /**
+     * 热点阈值（估算的每秒访问次数）
+     */
+    @Value("${common.redis.hotkey.threshold:1000}")
+    private double threshold;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    /**
+     * key -> [计数, 误差]，仅在synchronized(this)内访问
+     */
+    private final Map<String, long[]> counters = new HashMap<>();
+
+    private volatile Map<String, Double> topKeys = Collections.emptyMap();
+
+    private volatile Set<String> hotKeys = Collections.emptySet();
+
+    private MultiGauge rateGauge;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        rateGauge = MultiGauge.builder("common.redis.hotkey.rate")
+                .description("热点key估算的每秒访问次数")
+                .register(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "redis-hotkey-detector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::rotate, window, window, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 记录一次访问（先采样，未采中时不解码key）
+     * @param rawKey 序列化后的key（StringRedisSerializer）
+     */
+    public void record(byte[] rawKey) {
+        if (ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            offer(new String(rawKey, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * 记录一次访问
+     * @param key redis键
+     */
+    public void record(String key) {
+        if (ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            offer(key);
+        }
+    }
+
+    /**
+     * 是否为热点key（上一个统计窗口的估算访问次数超过阈值）
+     */
+    public boolean isHot(String key) {
+        return hotKeys.contains(key);
+    }
+
+    /**
+     * 上一个统计窗口访问最多的key
+     * @return key -> 估算的每秒访问次数，按访问次数从大到小排序
+     */
+    public Map<String, Double> getTopKeys() {
+        return topKeys;
+    }
+
+    /**
+     * Space-Saving计数：已有计数器加一；计数器未满新增；已满替换计数最小的key
+     */
+    synchronized void offer(String key) {
+        long[] counter = counters.get(key);
+        if (counter != null) {
+            counter[0]++;
+            return;
+        }
+        if (counters.size() < capacity) {
+            counters.put(key, new long[]{1, 0});
+            return;
+        }
+        // 计数器已满：替换计数最小的key，新key继承其计数（误差记为该计数）
+        Map.Entry<String, long[]> min = null;
+        for (Map.Entry<String, long[]> entry : counters.entrySet()) {
+            if (min == null || entry.getValue()[0] < min.getValue()[0]) {
+                min = entry;
+            }
+        }
+        long minCount = min.getValue()[0];
+        counters.remove(min.getKey());
+        counters.put(key, new long[]{minCount + 1, minCount});
+    }
+
+    /**
+     * 结束当前统计窗口：换算访问频率，更新热点key和指标，清空计数器
+     */
+    void rotate() {
+        try {
+            Map<String, long[]> snapshot;
+            synchronized (this) {
+                snapshot = new HashMap<>(counters);
+                counters.clear();
+            }
+            // 按保守估计（计数 - 误差）换算，避免低频key被误判为热点
+            double scale = 1 / (sampleRate * window);
+            Map<String, Double> rates = snapshot.entrySet().stream()
+                    .map(entry -> new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), (entry.getValue()[0] - entry.getValue()[1]) * scale))
+                    .filter(entry -> entry.getValue() > 0)
+                    .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                    .limit(top)
+                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+            topKeys = Collections.unmodifiableMap(rates);
+            hotKeys = rates.entrySet().stream()
+                    .filter(entry -> entry.getValue() >= threshold)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toSet());
+            rateGauge.register(rates.entrySet().stream()
+                    .map(entry -> MultiGauge.Row.of(Tags.of("key", entry.getKey()), entry.getValue()))
+                    .collect(Collectors.toList()), true);
+            if (!hotKeys.isEmpty()) {
+                log.warn("发现redis热点key：{}", hotKeys);
+            }
+        } catch (Exception ex) {
+            log.error("热点key统计失败。", ex);
+        }
+    }
+}
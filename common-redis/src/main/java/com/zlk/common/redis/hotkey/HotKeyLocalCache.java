@@ -0,0 +1,83 @@
+package com.zlk.common.redis.hotkey;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * @author likuan.zhou
+ * @title: HotKeyLocalCache
+ * @projectName common
+ * @description: 热点key本地缓存
+ * 被HotKeyDetector判定为热点的key，读取时在本地缓存很短的时间（默认1秒），由本地吸收热点流量，避免打满单个redis分片。
+ * 本节点通过RedisUtil写/删时会删除本地缓存；其他节点的写入最多延迟expire-after-write可见。
+ * 需同时开启common.redis.hotkey.enabled和common.redis.hotkey.local-cache.enabled。
+ * @date 2021/10/18/016 19:05
+ */
+@Component
+// 依赖HotKeyDetector，两个开关都开启才创建
+@ConditionalOnProperty(prefix = "common.redis.hotkey", name = {"enabled", "local-cache.enabled"}, havingValue = "true")
+public class HotKeyLocalCache {
+
+    /**
+     * 本地缓存写入后过期时间（单位毫秒）
+     */
+    @Value("${common.redis.hotkey.local-cache.expire-after-write:1000}")
+    private long expireAfterWrite;
+    /**
+     * 本地缓存最大条数
+     */
+    @Value("${common.redis.hotkey.local-cache.maximum-size:1000}")
+    private long maximumSize;
+
+    @Autowired
+    private HotKeyDetector hotKeyDetector;
+
+    private Cache<String, Object> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * 读取key：热点key优先读本地缓存，未命中时通过loader读取redis并缓存
+     * @param key redis键
+     * @param loader 读取redis
+     * @return 值
+     */
+    public Object get(String key, Function<String, Object> loader) {
+        if (!hotKeyDetector.isHot(key)) {
+            return loader.apply(key);
+        }
+        Object value = cache.getIfPresent(key);
+        if (value != null) {
+            // 本地命中的访问不会经过redisTemplate，需单独记录，否则热点会因访问量下降被取消
+            hotKeyDetector.record(key);
+            return value;
+        }
+        value = loader.apply(key);
+        if (value != null) {
+            cache.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * 删除本地缓存（本节点写/删key时调用）
+     * @param key redis键
+     */
+    public void invalidate(String key) {
+        cache.invalidate(key);
+    }
+}
@@ -0,0 +1,70 @@
+package com.zlk.common.redis.metrics;
+
+import com.zlk.common.redis.config.RedisCommandInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author likuan.zhou
+ * @title: RedisCommandMetricsInterceptor
+ * @projectName common
+ * @description: redis命令指标
+ * 记录redisTemplate连接上每个命令的耗时和次数：common.redis.command{command,outcome}，outcome为success/error，
+ * 由此得到每个命令的吞吐和错误率（RedisUtil吞掉的异常在这里仍能统计到）。管道/事务中的命令只在exec/closePipeline时真正执行。
+ * common.redis.metrics.enabled=true时生效，未开启时连接不做代理。
+ * @date 2021/10/18/016 19:05
+ */
+@Component
+@ConditionalOnProperty(prefix = "common.redis.metrics", name = "enabled", havingValue = "true")
+public class RedisCommandMetricsInterceptor implements RedisCommandInterceptor {
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    private MeterRegistry registry;
+
+    /**
+     * 命令:outcome -> timer，避免每次调用都构建meter
+     */
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        String command = invocation.getMethod().getName();
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            Object result = invocation.proceed();
+            outcome = "success";
+            return result;
+        } finally {
+            timer(command, outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Timer timer(String command, String outcome) {
+        return timers.computeIfAbsent(command + ":" + outcome, name -> Timer.builder("common.redis.command")
+                .description("redis命令耗时")
+                .tag("command", command)
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+}
@@ -0,0 +1,181 @@
+package com.zlk.common.redis.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author likuan.zhou
+ * @title: RedisMetricsAspect
+ * @projectName common
+ * @description: RedisUtil和RedissonLockImpl的操作指标
+ * common.redis.operation{class,method,outcome}：每个操作的耗时和次数（p50/p99/p999 + 直方图），outcome为success/error；
+ * common.redis.gets{method,result}：get/hGet的命中（hit）与未命中（miss）次数；
+ * common.redis.lock.wait{prefix,method,acquired}：上锁等待时间；
+ * common.redis.lock.hold{prefix,type}：从上锁成功到同一线程解锁的持有时间。
+ * prefix为锁key的前common.redis.metrics.lock-prefix-segments（默认1）段，且不含最后一段（通常是id），
+ * 如order:lock:1001 -> order（2段时为order:lock），没有':'的key记为other，保证指标维度有限。
+ * common.redis.metrics.enabled=true时生效，未开启时不创建切面，没有额外开销。
+ * @date 2021/10/18/016 19:05
+ */
+@Aspect
+@Component
+@ConditionalOnProperty(prefix = "common.redis.metrics", name = "enabled", havingValue = "true")
+public class RedisMetricsAspect {
+
+    /**
+     * 每个线程未解锁的上锁时间超过该数量时丢弃（锁过期未解锁的情况），避免内存泄漏
+     */
+    private static final int MAX_HELD_LOCKS = 1000;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Value("${common.redis.metrics.lock-prefix-segments:1}")
+    private int prefixSegments;
+
+    private MeterRegistry registry;
+
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * 当前线程持有的锁：方法类型:key -> 上锁成功的时间（可重入，按栈记录）
+     */
+    private final ThreadLocal<Map<String, Deque<Long>>> heldLocks = ThreadLocal.withInitial(HashMap::new);
+
+    @PostConstruct
+    public void init() {
+        registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+    }
+
+    //==========================操作耗时==============================
+
+    @Around("execution(public * com.zlk.common.redis.util.RedisUtil.*(..)) || execution(public * com.zlk.common.redis.redisson.RedissonLockImpl.*(..))")
+    public Object timeOperation(ProceedingJoinPoint joinPoint) throws Throwable {
+        String className = joinPoint.getSignature().getDeclaringType().getSimpleName();
+        String method = joinPoint.getSignature().getName();
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            Object result = joinPoint.proceed();
+            outcome = "success";
+            return result;
+        } finally {
+            long duration = System.nanoTime() - start;
+            timer("common.redis.operation", "redis操作耗时", "class", className, "method", method, "outcome", outcome)
+                    .record(duration, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    //==========================命中率==============================
+
+    @Around("execution(public * com.zlk.common.redis.util.RedisUtil.get(String)) || execution(public * com.zlk.common.redis.util.RedisUtil.hGet(String,Object))")
+    public Object countHit(ProceedingJoinPoint joinPoint) throws Throwable {
+        Object result = joinPoint.proceed();
+        counter("common.redis.gets", "method", joinPoint.getSignature().getName(), "result", result == null ? "miss" : "hit")
+                .increment();
+        return result;
+    }
+
+    //==========================分布式锁==============================
+
+    /**
+     * 上锁：记录等待时间，成功时记录上锁时间
+     */
+    @Around("execution(public Boolean com.zlk.common.redis.redisson.RedissonLockImpl.add*Lock(String,..))")
+    public Object timeLockWait(ProceedingJoinPoint joinPoint) throws Throwable {
+        String method = joinPoint.getSignature().getName();
+        String key = (String) joinPoint.getArgs()[0];
+        long start = System.nanoTime();
+        Object result = joinPoint.proceed();
+        long acquiredAt = System.nanoTime();
+        boolean acquired = Boolean.TRUE.equals(result);
+        timer("common.redis.lock.wait", "分布式锁等待时间", "prefix", prefix(key, prefixSegments), "method", method, "acquired", String.valueOf(acquired))
+                .record(acquiredAt - start, TimeUnit.NANOSECONDS);
+        if (acquired) {
+            Map<String, Deque<Long>> locks = heldLocks.get();
+            if (locks.size() >= MAX_HELD_LOCKS) {
+                locks.clear();
+            }
+            locks.computeIfAbsent(lockType(method, "add") + ":" + key, k -> new ArrayDeque<>()).push(acquiredAt);
+        }
+        return result;
+    }
+
+    /**
+     * 解锁：记录持有时间
+     */
+    @Around("execution(public Boolean com.zlk.common.redis.redisson.RedissonLockImpl.remove*Lock(String))")
+    public Object timeLockHold(ProceedingJoinPoint joinPoint) throws Throwable {
+        String method = joinPoint.getSignature().getName();
+        String key = (String) joinPoint.getArgs()[0];
+        String lockType = lockType(method, "remove");
+        Map<String, Deque<Long>> locks = heldLocks.get();
+        Deque<Long> acquiredAt = locks.get(lockType + ":" + key);
+        if (acquiredAt != null) {
+            timer("common.redis.lock.hold", "分布式锁持有时间", "prefix", prefix(key, prefixSegments), "type", lockType)
+                    .record(System.nanoTime() - acquiredAt.pop(), TimeUnit.NANOSECONDS);
+            if (acquiredAt.isEmpty()) {
+                locks.remove(lockType + ":" + key);
+            }
+        }
+        return joinPoint.proceed();
+    }
+
+    /**
+     * 上锁/解锁方法对应的锁类型，如addTryLock、removeLock -> Lock，addFairTryLock、removeFairLock -> FairLock
+     */
+    static String lockType(String method, String action) {
+        return method.substring(action.length()).replace("Try", "");
+    }
+
+    /**
+     * 锁key的前缀：前segments段，最多到倒数第二段（最后一段通常是id），没有':'时为other
+     */
+    static String prefix(String key, int segments) {
+        int end = -1;
+        for (int i = 0; i < segments; i++) {
+            int index = key.indexOf(':', end + 1);
+            if (index < 0) {
+                break;
+            }
+            end = index;
+        }
+        return end > 0 ? key.substring(0, end) : "other";
+    }
+
+    private Timer timer(String name, String description, String... tags) {
+        return timers.computeIfAbsent(name + String.join(",", tags), k -> Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    private Counter counter(String name, String... tags) {
+        return counters.computeIfAbsent(name + String.join(",", tags), k -> Counter.builder(name)
+                .tags(tags)
+                .register(registry));
+    }
+}
@@ -3,7 +3,8 @@ package com.zlk.common.redis.redisson;
 import org.redisson.api.RFuture;
 import org.redisson.api.RLock;
 
-import java.util.concurrent.Future;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author likuan.zhou
@@ -48,10 +49,11 @@ public interface IRedissonLock {
     /**
      * 加redisson分布式锁（可重入锁--异步执行--过期（看门狗失效）--等待类型）
      * 尝试加锁，最多等待waitTime秒，上锁以后time秒自动解锁。超过时间未获取到锁返回false.否则返回true。去执行下面逻辑。
+     * 锁的持有者为调用线程，解锁需在同一线程；跨线程使用tryLockAsync(key, waitTime, time, threadId)
      * @param key redis锁key
-     * @return 执行结果 true成功，false失败
+     * @return 执行结果 true成功，false失败；redisson异常时异常结束
      */
-     Future<Boolean> addTryLockAsync(String key, long waitTime, long time);
+     CompletableFuture<Boolean> addTryLockAsync(String key, long waitTime, long time);
 
     //=============================== 公平锁（Fair Lock）=====================================
     // 基于Redis的Redisson分布式可重入公平锁也是实现了java.util.concurrent.locks.Lock接口的一种RLock对象。。同时还提供了异步（Async）、反射式（Reactive）和RxJava2标准的接口
@@ -86,7 +88,9 @@ public interface IRedissonLock {
      * @param waitTime 尝试加锁，最多等待waitTime秒（单位S）,超过时间未获取到锁返回false.否则返回true。去执行下面逻辑。
      * @param key redis锁key
      * @return 执行结果 true成功，false失败
+     * @deprecated 异常时返回null，使用tryFairLockAsync
      */
+     @Deprecated
      RFuture<Boolean> addFairTryLockAsync(String key, long waitTime, long time);
 
     //=============================== 联锁（MultiLock）=====================================
@@ -106,6 +110,27 @@ public interface IRedissonLock {
      */
      Boolean removeMultiLock(RLock... rLocks);
 
+    //=============================== 批量锁（多key）=====================================
+    // 按key批量上锁（如购物车每个SKU一把锁），key排序后用lua脚本一次上锁/解锁（集群模式下每个slot一个脚本，并发执行），全部上锁成功才算成功，否则已上的锁全部释放。
+    // 集群模式下建议同一批的key使用相同的hash tag（如"{cart:1001}:sku:1"），只需一个脚本、一次往返。
+    // 锁的数据结构与redisson可重入锁相同（hash，持有者 -> 重入次数），与addLock等同一个key的锁互斥，解锁时同样发布通知唤醒等待的redisson锁。
+
+    /**
+     * 加redisson分布式锁(批量锁--过期--等待类型)
+     * @param keys redis锁key集合
+     * @param waitTime 最多等待时间（单位S），超时返回false
+     * @param time 锁自动释放时间（单位S，必须大于0，批量锁没有看门狗续期）
+     * @return 执行结果 true成功，false失败
+     */
+     Boolean addMultiKeyLock(Collection<String> keys,long waitTime,long time);
+
+    /**
+     * 释放redisson分布式锁(批量锁)，需在上锁的线程调用
+     * @param keys redis锁key集合
+     * @return 执行结果 true成功，false失败（包括部分key已过期或不是当前线程持有）
+     */
+     Boolean removeMultiKeyLock(Collection<String> keys);
+
     //=============================== 红锁（RedLock）=====================================
     // 基于Redis的Redisson红锁RedissonRedLock对象实现了Redlock介绍的加锁算法。该对象也可以用来将多个RLock对象关联为一个红锁，每个RLock对象实例可以来自于不同的Redisson实例。
     // 红锁: 同时加锁，大部分锁节点加锁成功就算成功。locks.size() / 2 + 1为成功
@@ -250,4 +275,193 @@ public interface IRedissonLock {
      * @return 执行结果 true成功，false失败
      */
      Boolean removeCountDownLatch(String key);
+
+    //===============================锁句柄（LockHandle）=====================================
+    // 可重入锁的try-with-resources用法，close时解锁。
+    // 同一线程对同一个key重复上锁时，在最近一次redis上锁的自动释放时间内只在本地计数，不访问redis；
+    // 超过自动释放时间后重新在redis上锁（锁可能已过期被其他线程拿到），最外层句柄close时才真正解锁。
+
+    /**
+     * 上锁（可重入锁--普通类型，看门狗续期），redisson异常时返回未拿到锁的句柄
+     * @param key redis锁key
+     * @return 锁句柄
+     */
+    LockHandle acquireLock(String key);
+
+    /**
+     * 上锁（可重入锁--过期类型（看门狗失效））
+     * @param key redis锁key
+     * @param time 锁自动释放时间（单位S）
+     * @return 锁句柄
+     */
+    LockHandle acquireLock(String key,long time);
+
+    /**
+     * 尝试上锁（可重入锁--过期（看门狗失效）--等待类型），最多等待waitTime秒，超时返回未拿到锁的句柄
+     * @param key redis锁key
+     * @param waitTime 最多等待时间（单位S）
+     * @param time 锁自动释放时间（单位S）
+     * @return 锁句柄
+     */
+    LockHandle tryAcquireLock(String key,long waitTime,long time);
+
+    /**
+     * 尝试上锁（两级锁）：同一JVM内的线程先在本地排队，只有队首线程竞争分布式锁，适合单节点内大量线程争抢同一个key的场景。
+     * 本地排队使用按key的hash分段的锁（common.redis.redisson.local-stripes，默认1024段），不同key落在同一段时也会在本地互相等待，
+     * 同时持有的不同key较多或持有时间较长时应调大分段数，或使用tryAcquireLock。
+     * @param key redis锁key
+     * @param waitTime 最多等待时间（单位S，包含本地排队时间）
+     * @param time 锁自动释放时间（单位S）
+     * @return 锁句柄
+     */
+    LockHandle tryAcquireTwoTierLock(String key,long waitTime,long time);
+
+    //===============================异步接口（CompletableFuture）=====================================
+    // 不阻塞调用线程，供响应式/异步调用方使用。锁的持有者由threadId指定（调用方自行分配，如请求ID对应的long值），上锁和解锁可以在不同线程。
+    // redisson异常时future异常结束；cancel会取消redisson的请求，取消后才拿到的锁会自动释放。
+
+    /**
+     * 尝试加锁（可重入锁）
+     * @param key redis锁key
+     * @param waitTime 最多等待时间（单位S）
+     * @param time 锁自动释放时间（单位S）
+     * @param threadId 锁持有者ID
+     * @return true成功，false等待超时
+     */
+    CompletableFuture<Boolean> tryLockAsync(String key,long waitTime,long time,long threadId);
+
+    /**
+     * 解锁（可重入锁）
+     * @param key redis锁key
+     * @param threadId 锁持有者ID
+     * @return 解锁完成
+     */
+    CompletableFuture<Void> unlockAsync(String key,long threadId);
+
+    /**
+     * 尝试加锁（公平锁）
+     * @param key redis锁key
+     * @param waitTime 最多等待时间（单位S）
+     * @param time 锁自动释放时间（单位S）
+     * @param threadId 锁持有者ID
+     * @return true成功，false等待超时
+     */
+    CompletableFuture<Boolean> tryFairLockAsync(String key,long waitTime,long time,long threadId);
+
+    /**
+     * 解锁（公平锁）
+     * @param key redis锁key
+     * @param threadId 锁持有者ID
+     * @return 解锁完成
+     */
+    CompletableFuture<Void> unlockFairAsync(String key,long threadId);
+
+    /**
+     * 尝试加读锁（读写锁）
+     * @param key redis锁key
+     * @param waitTime 最多等待时间（单位S）
+     * @param time 锁自动释放时间（单位S）
+     * @param threadId 锁持有者ID
+     * @return true成功，false等待超时
+     */
+    CompletableFuture<Boolean> tryReadLockAsync(String key,long waitTime,long time,long threadId);
+
+    /**
+     * 解读锁（读写锁）
+     * @param key redis锁key
+     * @param threadId 锁持有者ID
+     * @return 解锁完成
+     */
+    CompletableFuture<Void> unlockReadAsync(String key,long threadId);
+
+    /**
+     * 尝试加写锁（读写锁）
+     * @param key redis锁key
+     * @param waitTime 最多等待时间（单位S）
+     * @param time 锁自动释放时间（单位S）
+     * @param threadId 锁持有者ID
+     * @return true成功，false等待超时
+     */
+    CompletableFuture<Boolean> tryWriteLockAsync(String key,long waitTime,long time,long threadId);
+
+    /**
+     * 解写锁（读写锁）
+     * @param key redis锁key
+     * @param threadId 锁持有者ID
+     * @return 解锁完成
+     */
+    CompletableFuture<Void> unlockWriteAsync(String key,long threadId);
+
+    /**
+     * 尝试获取信号量
+     * @param key key
+     * @param val 获取的数量
+     * @param waitTime 最多等待时间（单位S）
+     * @return true成功，false等待超时
+     */
+    CompletableFuture<Boolean> tryAcquireSemaphoreAsync(String key,int val,long waitTime);
+
+    /**
+     * 释放信号量
+     * @param key key
+     * @param val 释放的数量
+     * @return 释放完成
+     */
+    CompletableFuture<Void> releaseSemaphoreAsync(String key,int val);
+
+    /**
+     * 闭锁 （初始值）
+     * @param key key
+     * @param val 闭锁的计数初始值
+     * @return true成功，false闭锁已存在
+     */
+    CompletableFuture<Boolean> trySetCountAsync(String key,long val);
+
+    /**
+     * 闭锁 （锁计数减一）
+     * @param key key
+     * @return 完成
+     */
+    CompletableFuture<Void> countDownAsync(String key);
+
+    /**
+     * 闭锁 （当前计数，为0时表示已放行）
+     * @param key key
+     * @return 当前计数
+     */
+    CompletableFuture<Long> getCountAsync(String key);
+
+    //===============================fencing令牌（Fencing Token）=====================================
+    // 带过期时间的锁可能在持有者（如GC停顿、慢查询）仍在写入时过期，下一个持有者拿到锁后两者的写入会重叠。
+    // 每次上锁成功时从redis计数器取一个单调递增的令牌，写入下游时带上令牌，
+    // 下游只接受不小于已写入令牌的写（如common-db的FencingTokenUtil），过期持有者的写入会被拒绝。
+    // 递增令牌前后都确认当前线程仍持有锁（isHeldByCurrentThread），锁已过期时不发放令牌并解锁，返回null。
+    // 计数器key为"{key}:fencing"（key自带hash tag时为key + ":fencing"，与锁在同一个slot），不设置过期时间：
+    // 计数器过期或被删除后令牌会从1重新开始，下游会拒绝之后的所有写入，因此每个使用过fencing的锁key都会长期占用一个计数器。
+
+    /**
+     * 加锁并获取fencing令牌（可重入锁--过期类型（看门狗失效））
+     * @param key redis锁key
+     * @param time 锁自动释放时间（单位S）
+     * @return fencing令牌，上锁失败返回null
+     */
+    Long addFencedLock(String key,long time);
+
+    /**
+     * 尝试加锁并获取fencing令牌（可重入锁--过期（看门狗失效）--等待类型）
+     * @param key redis锁key
+     * @param waitTime 最多等待时间（单位S）
+     * @param time 锁自动释放时间（单位S）
+     * @return fencing令牌，超时或上锁失败返回null
+     */
+    Long addFencedTryLock(String key,long waitTime,long time);
+
+    /**
+     * 尝试上锁并获取fencing令牌（锁句柄，LockHandle.getFencingToken获取令牌）
+     * @param key redis锁key
+     * @param waitTime 最多等待时间（单位S）
+     * @param time 锁自动释放时间（单位S）
+     * @return 锁句柄
+     */
+    LockHandle tryAcquireFencedLock(String key,long waitTime,long time);
 }
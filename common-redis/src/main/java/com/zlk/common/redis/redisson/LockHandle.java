@@ -0,0 +1,74 @@
+package com.zlk.common.redis.redisson;
+
+/**
+ * @author likuan.zhou
+ * @title: LockHandle
+ * @projectName common
+ * @description: 分布式锁句柄，配合try-with-resources使用，close时解锁
+ * <pre>
+ * try (LockHandle handle = redissonLock.tryAcquireLock(key, 3, 10)) {
+ *     if (!handle.isAcquired()) {
+ *         return;
+ *     }
+ *     // 业务逻辑
+ * }
+ * </pre>
+ * 未拿到锁的句柄close为空操作；需在上锁的线程内close，重复close只解锁一次。
+ * @date 2021/10/18/016 19:05
+ */
+public final class LockHandle implements AutoCloseable {
+
+    private final String key;
+
+    private final Runnable release;
+
+    private final Long fencingToken;
+
+    private boolean closed;
+
+    LockHandle(String key, Runnable release) {
+        this(key, release, null);
+    }
+
+    private LockHandle(String key, Runnable release, Long fencingToken) {
+        this.key = key;
+        this.release = release;
+        this.fencingToken = fencingToken;
+    }
+
+    /**
+     * 带fencing令牌的句柄（与原句柄共用解锁，原句柄不再使用）
+     */
+    LockHandle withFencingToken(long fencingToken) {
+        return new LockHandle(key, release, fencingToken);
+    }
+
+    /**
+     * 是否拿到锁
+     */
+    public boolean isAcquired() {
+        return release != null;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * fencing令牌（tryAcquireFencedLock获取的句柄才有，否则为null），写入下游时带上，下游拒绝比已写入令牌小的写
+     */
+    public Long getFencingToken() {
+        return fencingToken;
+    }
+
+    /**
+     * 解锁（不抛出异常，解锁失败记录日志）
+     */
+    @Override
+    public void close() {
+        if (release != null && !closed) {
+            closed = true;
+            release.run();
+        }
+    }
+}
@@ -1,14 +1,25 @@
 package com.zlk.common.redis.redisson;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.extern.slf4j.Slf4j;
 import org.redisson.RedissonMultiLock;
 import org.redisson.RedissonRedLock;
 import org.redisson.api.*;
+import org.redisson.client.codec.StringCodec;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.Future;
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * @author likuan.zhou
@@ -23,6 +34,52 @@ public class RedissonLockImpl implements IRedissonLock {
     @Autowired
     private RedissonClient redisson;
 
+    /**
+     * 执行锁相关的lua脚本
+     */
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 缓存的锁对象数量上限
+     */
+    @Value("${common.redis.redisson.lock-cache-size:10000}")
+    private long lockCacheSize;
+
+    /**
+     * key -> 锁对象（RLock不保存线程状态，可跨线程复用），避免每次上锁/解锁都创建
+     */
+    private Cache<String, RLock> locks;
+
+    private Cache<String, RLock> fairLocks;
+
+    /**
+     * 两级锁的本地分段锁数量（2的幂），不同key落在同一段时会在本地互相排队
+     */
+    @Value("${common.redis.redisson.local-stripes:1024}")
+    private int localStripes;
+
+    /**
+     * 两级锁的本地分段锁（公平锁，按到达顺序排队）
+     */
+    private ReentrantLock[] localLocks;
+
+    /**
+     * 当前线程通过锁句柄持有的锁：key -> 持有状态
+     */
+    private final ThreadLocal<Map<String, HeldLock>> heldLocks = ThreadLocal.withInitial(HashMap::new);
+
+    @PostConstruct
+    public void init() {
+        localLocks = new ReentrantLock[Integer.highestOneBit(Math.max(localStripes - 1, 1)) << 1];
+        for (int i = 0; i < localLocks.length; i++) {
+            localLocks[i] = new ReentrantLock(true);
+        }
+        locks = Caffeine.newBuilder().maximumSize(lockCacheSize).expireAfterAccess(10, TimeUnit.MINUTES).build();
+        fairLocks = Caffeine.newBuilder().maximumSize(lockCacheSize).expireAfterAccess(10, TimeUnit.MINUTES).build();
+        slots = Caffeine.newBuilder().maximumSize(lockCacheSize).build();
+    }
+
     //===============================可重入锁（Reentrant Lock）=====================================
     // 基于Redis的Redisson分布式可重入锁RLock Java对象实现了java.util.concurrent.locks.Lock接口。同时还提供了异步（Async）、反射式（Reactive）和RxJava2标准的接口
     // 可重入锁: 避免死锁，可重复递归调用的锁,同一线程外层函数获取锁后,内层递归函数仍然可以获取锁,并且不发生死锁(前提是同一个对象或者class)
@@ -36,7 +93,7 @@ public class RedissonLockImpl implements IRedissonLock {
     @Override
     public Boolean addLock(String key) {
         try {
-            RLock lock = redisson.getLock(key);
+            RLock lock = getLock(key);
             lock.lock();
             return true;
         }catch (Exception ex) {
@@ -53,7 +110,7 @@ public class RedissonLockImpl implements IRedissonLock {
     @Override
     public Boolean removeLock(String key) {
         try {
-            RLock lock = redisson.getLock(key);
+            RLock lock = getLock(key);
             lock.unlock();
             return true;
         }catch (Exception ex) {
@@ -71,7 +128,7 @@ public class RedissonLockImpl implements IRedissonLock {
     @Override
     public Boolean addLock(String key,long time) {
         try {
-            RLock lock = redisson.getLock(key);
+            RLock lock = getLock(key);
             // 加锁以后time秒钟自动解锁
             // 无需调用unlock方法手动解锁；也可以手动失效
             lock.lock(time, TimeUnit.SECONDS);
@@ -93,7 +150,7 @@ public class RedissonLockImpl implements IRedissonLock {
     @Override
     public Boolean addTryLock(String key,long waitTime,long time) {
         try {
-            RLock lock = redisson.getLock(key);
+            RLock lock = getLock(key);
             // 尝试加锁，最多等待waitTime秒，上锁以后time秒自动解锁。超过时间未获取到锁返回false.否则返回true。去执行下面逻辑。
             // 说明：尝试加锁的线程等待waitTime秒（超过时间未获取到锁返回false.否则返回true），超时执行下面逻辑。获取到锁的线程持有锁time秒后锁失效。
             // 无需调用unlock方法手动解锁,锁到期会自动失效；也可以手动失效
@@ -111,18 +168,11 @@ public class RedissonLockImpl implements IRedissonLock {
      * @return 执行结果 true成功，false失败
      */
     @Override
-    public Future<Boolean> addTryLockAsync(String key,long waitTime,long time) {
-        try {
-            RLock lock = redisson.getLock(key);
-            //lock.lockAsync();
-            //lock.lockAsync(10, TimeUnit.SECONDS);
-            // 可重入锁-异步执行
-            Future<Boolean> future = lock.tryLockAsync(waitTime, time, TimeUnit.SECONDS);
-            return future;
-        }catch (Exception ex) {
-            log.error("分布式锁上锁失败。key:{}",key,ex);
-        }
-        return null;
+    public CompletableFuture<Boolean> addTryLockAsync(String key,long waitTime,long time) {
+        //lock.lockAsync();
+        //lock.lockAsync(10, TimeUnit.SECONDS);
+        // 可重入锁-异步执行（持有者为调用线程）
+        return tryLockAsync(key, waitTime, time, Thread.currentThread().getId());
     }
 
 
@@ -139,7 +189,7 @@ public class RedissonLockImpl implements IRedissonLock {
     @Override
     public Boolean addFairLock(String key) {
         try {
-            RLock fairLock = redisson.getFairLock(key);
+            RLock fairLock = getFairLock(key);
             fairLock.lock();
             return true;
         }catch (Exception ex) {
@@ -156,7 +206,7 @@ public class RedissonLockImpl implements IRedissonLock {
     @Override
     public Boolean removeFairLock(String key) {
         try {
-            RLock fairLock = redisson.getFairLock(key);
+            RLock fairLock = getFairLock(key);
             fairLock.unlock();
             return true;
         }catch (Exception ex) {
@@ -175,7 +225,7 @@ public class RedissonLockImpl implements IRedissonLock {
     @Override
     public Boolean addFairTryLock(String key,long waitTime,long time) {
         try {
-            RLock fairLock = redisson.getFairLock(key);
+            RLock fairLock = getFairLock(key);
             //上锁以后time秒自动解锁（可重入锁--公平锁--自定义过期）
             //fairLock.tryLock(time,TimeUnit.SECONDS);
             // 尝试加锁，最多等待waitTime秒，上锁以后time秒自动解锁
@@ -195,9 +245,10 @@ public class RedissonLockImpl implements IRedissonLock {
      * @return 执行结果 true成功，false失败
      */
     @Override
+    @Deprecated
     public RFuture<Boolean>  addFairTryLockAsync(String key,long waitTime,long time) {
         try {
-            RLock fairLock = redisson.getFairLock(key);
+            RLock fairLock = getFairLock(key);
             //普通异步
             //fairLock.lockAsync();
             //异步，上锁以后time秒自动解锁
@@ -266,6 +317,223 @@ public class RedissonLockImpl implements IRedissonLock {
     //boolean res = lock.tryLock(100, 10, TimeUnit.SECONDS);
 
 
+    //=============================== 批量锁（多key）=====================================
+    // 锁结构与redisson可重入锁一致：hash（持有者 -> 重入次数）+ 过期时间，持有者为"本实例ID:线程ID"。
+    // 上锁：任一key被其他持有者占用时不做任何修改，返回该key的剩余时间；否则全部重入次数+1并设置过期时间，返回nil。
+    // 解锁：重入次数-1（过期时间不变），减到0时删除并在ARGV[i + 2]（KEYS[i]的redisson解锁通知频道）发布通知，返回当前线程持有的key数量。
+    // KEYS为同一个slot的锁key，ARGV[1]过期时间（单位毫秒），ARGV[2]持有者。
+    // 集群模式下每个slot一个脚本（脚本的key必须在同一个slot，同一节点上的不同slot同样不能合并），各slot的脚本异步并发执行，
+    // redisson按slot路由到节点并在节点连接上流水线发送，总耗时约为一次往返；key使用相同的hash tag（如"{cart:1001}:sku:1"）时只有一个脚本。
+
+    private static final String MULTI_KEY_LOCK_SCRIPT = "for i = 1, #KEYS do "
+            + "  if redis.call('exists', KEYS[i]) == 1 and redis.call('hexists', KEYS[i], ARGV[2]) == 0 then "
+            + "    return redis.call('pttl', KEYS[i]) "
+            + "  end "
+            + "end "
+            + "for i = 1, #KEYS do "
+            + "  redis.call('hincrby', KEYS[i], ARGV[2], 1) "
+            + "  redis.call('pexpire', KEYS[i], ARGV[1]) "
+            + "end "
+            + "return nil";
+
+    private static final String MULTI_KEY_UNLOCK_SCRIPT = "local released = 0 "
+            + "for i = 1, #KEYS do "
+            + "  if redis.call('hexists', KEYS[i], ARGV[2]) == 1 then "
+            + "    released = released + 1 "
+            + "    if redis.call('hincrby', KEYS[i], ARGV[2], -1) <= 0 then "
+            + "      redis.call('del', KEYS[i]) "
+            + "      redis.call('publish', ARGV[i + 2], 0) "
+            + "    end "
+            + "  end "
+            + "end "
+            + "return released";
+
+    /**
+     * 批量锁重试间隔上限（单位毫秒）
+     */
+    private static final long MULTI_KEY_RETRY_INTERVAL = 100;
+
+    /**
+     * 本实例ID（批量锁持有者的前缀）
+     */
+    private final String lockId = UUID.randomUUID().toString();
+
+    /**
+     * 集群模式下key -> slot（CLUSTER KEYSLOT需要访问redis，结果不变，缓存后复用）
+     */
+    private Cache<String, Integer> slots;
+
+    /**
+     * 加redisson分布式锁(批量锁--过期--等待类型)
+     * 冲突时按冲突锁的剩余时间（最多100毫秒，带随机抖动）等待后重试，直到waitTime用完
+     * @param keys redis锁key集合
+     * @param waitTime 最多等待时间（单位S），超时返回false
+     * @param time 锁自动释放时间（单位S，必须大于0）
+     * @return 执行结果 true成功，false失败
+     */
+    @Override
+    public Boolean addMultiKeyLock(Collection<String> keys,long waitTime,long time) {
+        if (keys == null || keys.isEmpty()) {
+            return false;
+        }
+        if (time <= 0) {
+            // pexpire的过期时间小于等于0会直接删除锁
+            log.error("分布式锁--批量锁上锁失败，锁自动释放时间必须大于0。keys:{}",keys);
+            return false;
+        }
+        try {
+            Collection<List<String>> groups = groupKeys(keys);
+            String leaseTime = String.valueOf(TimeUnit.SECONDS.toMillis(time));
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(waitTime);
+            while (true) {
+                Long ttl = tryLockGroups(groups, leaseTime);
+                if (ttl == null) {
+                    return true;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                long interval = ThreadLocalRandom.current().nextLong(MULTI_KEY_RETRY_INTERVAL / 10, MULTI_KEY_RETRY_INTERVAL);
+                Thread.sleep(Math.min(remaining, ttl > 0 ? Math.min(ttl, interval) : interval));
+            }
+        }catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            log.error("分布式锁--批量锁上锁被中断。keys:{}",keys,ex);
+        }catch (Exception ex) {
+            log.error("分布式锁--批量锁上锁失败。keys:{}",keys,ex);
+        }
+        return false;
+    }
+
+    /**
+     * 释放redisson分布式锁(批量锁)
+     * @param keys redis锁key集合
+     * @return 执行结果 true成功，false失败（部分key已过期或不是当前线程持有时同样释放其余key）
+     */
+    @Override
+    public Boolean removeMultiKeyLock(Collection<String> keys) {
+        if (keys == null || keys.isEmpty()) {
+            return false;
+        }
+        try {
+            Collection<List<String>> groups = groupKeys(keys);
+            long expected = groups.stream().mapToLong(List::size).sum();
+            long released = unlockGroups(groups);
+            if (released < expected) {
+                log.error("分布式锁--批量锁解锁不完整，部分锁已过期或不是当前线程持有。keys:{}，released:{}",keys,released);
+                return false;
+            }
+            return true;
+        }catch (Exception ex) {
+            log.error("分布式锁--批量锁解锁失败。keys:{}",keys,ex);
+        }
+        return false;
+    }
+
+    /**
+     * 各slot并发上锁，任一组冲突或失败时释放已上锁的组
+     * @return 成功返回null，冲突返回冲突锁的剩余时间（单位毫秒）
+     */
+    private Long tryLockGroups(Collection<List<String>> groups, String leaseTime) {
+        String holder = multiKeyLockHolder();
+        Map<List<String>, RFuture<Long>> futures = new LinkedHashMap<>();
+        for (List<String> group : groups) {
+            futures.put(group, evalAsync(MULTI_KEY_LOCK_SCRIPT, group, leaseTime, holder));
+        }
+        List<List<String>> locked = new ArrayList<>();
+        Long ttl = null;
+        RuntimeException failure = null;
+        for (Map.Entry<List<String>, RFuture<Long>> entry : futures.entrySet()) {
+            try {
+                Long groupTtl = entry.getValue().join();
+                if (groupTtl == null) {
+                    locked.add(entry.getKey());
+                } else if (ttl == null) {
+                    ttl = groupTtl;
+                }
+            } catch (RuntimeException ex) {
+                failure = failure == null ? ex : failure;
+            }
+        }
+        if (ttl != null || failure != null) {
+            unlockGroups(locked);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return ttl;
+    }
+
+    /**
+     * 各slot并发解锁
+     * @return 实际释放（当前线程持有）的key数量
+     */
+    private long unlockGroups(Collection<List<String>> groups) {
+        String holder = multiKeyLockHolder();
+        List<RFuture<Long>> futures = new ArrayList<>();
+        for (List<String> group : groups) {
+            String[] args = new String[group.size() + 2];
+            args[0] = "0";
+            args[1] = holder;
+            for (int i = 0; i < group.size(); i++) {
+                args[i + 2] = lockChannel(group.get(i));
+            }
+            futures.add(evalAsync(MULTI_KEY_UNLOCK_SCRIPT, group, args));
+        }
+        long released = 0;
+        RuntimeException failure = null;
+        for (RFuture<Long> future : futures) {
+            try {
+                Long count = future.join();
+                released += count == null ? 0 : count;
+            } catch (RuntimeException ex) {
+                failure = failure == null ? ex : failure;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return released;
+    }
+
+    /**
+     * 异步执行同一个slot的脚本（按第一个key路由节点）
+     */
+    private RFuture<Long> evalAsync(String script, List<String> keys, String... args) {
+        return redisson.getScript().evalAsync(keys.get(0), RScript.Mode.READ_WRITE, StringCodec.INSTANCE, script,
+                RScript.ReturnType.INTEGER, new ArrayList<>(keys), (Object[]) args);
+    }
+
+    /**
+     * redisson可重入锁的解锁通知频道（与RedissonLock.getChannelName一致：key含'{'时直接加前缀，否则把key作为hash tag）
+     */
+    static String lockChannel(String key) {
+        return "redisson_lock__channel:" + (key.contains("{") ? key : "{" + key + "}");
+    }
+
+    /**
+     * 批量锁的持有者：本实例ID:线程ID
+     */
+    private String multiKeyLockHolder() {
+        return lockId + ":" + Thread.currentThread().getId();
+    }
+
+    /**
+     * key去重排序；集群模式下按slot分组（lua脚本的key需在同一个slot），组之间按slot排序
+     */
+    private Collection<List<String>> groupKeys(Collection<String> keys) {
+        TreeSet<String> sortedKeys = new TreeSet<>(keys);
+        if (!redisson.getConfig().isClusterConfig()) {
+            return Collections.singletonList(new ArrayList<>(sortedKeys));
+        }
+        Map<Integer, List<String>> groups = new TreeMap<>();
+        for (String key : sortedKeys) {
+            groups.computeIfAbsent(slots.get(key, redisson.getKeys()::getSlot), slot -> new ArrayList<>()).add(key);
+        }
+        return groups.values();
+    }
+
     //=============================== 红锁（RedLock）=====================================
     // 基于Redis的Redisson红锁RedissonRedLock对象实现了Redlock介绍的加锁算法。该对象也可以用来将多个RLock对象关联为一个红锁，每个RLock对象实例可以来自于不同的Redisson实例。
     // 红锁: 同时加锁，大部分锁节点加锁成功就算成功。locks.size() / 2 + 1为成功
@@ -653,4 +921,443 @@ public class RedissonLockImpl implements IRedissonLock {
         return false;
     }
 
+
+    //===============================锁句柄（LockHandle）=====================================
+
+    /**
+     * 上锁（可重入锁--普通类型，看门狗续期），redisson异常时返回未拿到锁的句柄
+     * @param key redis锁key
+     * @return 锁句柄
+     */
+    @Override
+    public LockHandle acquireLock(String key) {
+        return acquire(key, -1, lock -> {
+            lock.lock();
+            return true;
+        });
+    }
+
+    /**
+     * 上锁（可重入锁--过期类型（看门狗失效））
+     * @param key redis锁key
+     * @param time 锁自动释放时间（单位S）
+     * @return 锁句柄
+     */
+    @Override
+    public LockHandle acquireLock(String key,long time) {
+        return acquire(key, time, lock -> {
+            lock.lock(time, TimeUnit.SECONDS);
+            return true;
+        });
+    }
+
+    /**
+     * 尝试上锁（可重入锁--过期（看门狗失效）--等待类型），最多等待waitTime秒，超时返回未拿到锁的句柄
+     * @param key redis锁key
+     * @param waitTime 最多等待时间（单位S）
+     * @param time 锁自动释放时间（单位S）
+     * @return 锁句柄
+     */
+    @Override
+    public LockHandle tryAcquireLock(String key,long waitTime,long time) {
+        return acquire(key, time, lock -> lock.tryLock(waitTime, time, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 两级锁：同一JVM内的线程先在本地分段锁上排队，只有队首线程竞争redis分布式锁，
+     * 高并发争抢同一个key时避免每个线程各自订阅/轮询redis。等待时间包含本地排队的时间，解锁时先释放分布式锁再释放本地锁。
+     * 本地锁按key的hash分为localStripes段，不同key落在同一段时会互相排队（分布式锁并不冲突），等待时间同样计入waitTime。
+     * 本线程已持有该key时与acquireLock相同，只增加本地重入次数。
+     * @param key redis锁key
+     * @param waitTime 最多等待时间（单位S）
+     * @param time 锁自动释放时间（单位S）
+     * @return 锁句柄
+     */
+    @Override
+    public LockHandle tryAcquireTwoTierLock(String key,long waitTime,long time) {
+        ReentrantLock localLock = localLocks[stripe(key)];
+        return acquire(key, time, localLock, lock -> {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(waitTime);
+            if (!localLock.tryLock(waitTime, TimeUnit.SECONDS)) {
+                return false;
+            }
+            boolean acquired = false;
+            try {
+                long remaining = Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+                acquired = lock.tryLock(remaining, TimeUnit.SECONDS.toMillis(time), TimeUnit.MILLISECONDS);
+                return acquired;
+            } finally {
+                if (!acquired) {
+                    localLock.unlock();
+                }
+            }
+        });
+    }
+
+    private LockHandle acquire(String key, long leaseTime, LockAcquirer acquirer) {
+        return acquire(key, leaseTime, null, acquirer);
+    }
+
+    /**
+     * 本线程已持有且租期未到时只增加本地重入次数，否则通过redis上锁
+     * 租期已到时redis中的锁可能已过期并被其他线程拿到，不能再走本地重入，需重新在redis上锁
+     * @param leaseTime 锁自动释放时间（单位S），小于等于0为看门狗续期（没有租期）
+     * @param localLock 两级锁的本地锁（由acquirer上锁，普通锁为null）
+     */
+    private LockHandle acquire(String key, long leaseTime, ReentrantLock localLock, LockAcquirer acquirer) {
+        Map<String, HeldLock> held = heldLocks.get();
+        HeldLock heldLock = held.get(key);
+        if (heldLock != null && heldLock.isLeaseValid()) {
+            heldLock.count++;
+            return new LockHandle(key, () -> release(key));
+        }
+        // 租期从发起上锁前开始计算，比redis中的实际到期时间早
+        long start = System.nanoTime();
+        try {
+            if (!acquirer.acquire(getLock(key))) {
+                return new LockHandle(key, null);
+            }
+        }catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            log.error("分布式锁上锁被中断。key:{}",key,ex);
+            return new LockHandle(key, null);
+        }catch (Exception ex) {
+            log.error("分布式锁上锁失败。key:{}",key,ex);
+            return new LockHandle(key, null);
+        }
+        if (heldLock == null) {
+            heldLock = new HeldLock();
+            held.put(key, heldLock);
+        }
+        heldLock.count++;
+        heldLock.redisHolds++;
+        if (localLock != null) {
+            heldLock.localLock = localLock;
+            heldLock.localHolds++;
+        }
+        heldLock.leaseDeadline = leaseTime > 0 ? start + TimeUnit.SECONDS.toNanos(leaseTime) : null;
+        return new LockHandle(key, () -> release(key));
+    }
+
+    /**
+     * 减少本地重入次数，减到0时通过redis解锁（两级锁再释放本地锁）
+     */
+    private void release(String key) {
+        Map<String, HeldLock> held = heldLocks.get();
+        HeldLock heldLock = held.get(key);
+        if (heldLock == null) {
+            log.error("分布式锁解锁失败，当前线程未持有锁。key:{}",key);
+            return;
+        }
+        if (--heldLock.count > 0) {
+            return;
+        }
+        held.remove(key);
+        try {
+            RLock lock = getLock(key);
+            for (int i = 0; i < heldLock.redisHolds; i++) {
+                lock.unlock();
+            }
+        }catch (IllegalMonitorStateException ex) {
+            // 租期已过，redis中的锁已自动释放
+            log.warn("分布式锁解锁时已过期。key:{}",key);
+        }catch (Exception ex) {
+            log.error("分布式锁解锁失败。key:{}",key,ex);
+        } finally {
+            for (int i = 0; i < heldLock.localHolds; i++) {
+                heldLock.localLock.unlock();
+            }
+        }
+    }
+
+    private int stripe(String key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (localLocks.length - 1);
+    }
+
+    private RLock getLock(String key) {
+        return locks.get(key, redisson::getLock);
+    }
+
+    private RLock getFairLock(String key) {
+        return fairLocks.get(key, redisson::getFairLock);
+    }
+
+    //===============================异步接口（CompletableFuture）=====================================
+
+    @Override
+    public CompletableFuture<Boolean> tryLockAsync(String key,long waitTime,long time,long threadId) {
+        return tryLockAsync(key, () -> getLock(key), waitTime, time, threadId);
+    }
+
+    @Override
+    public CompletableFuture<Void> unlockAsync(String key,long threadId) {
+        return unlockAsync(key, () -> getLock(key), threadId);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> tryFairLockAsync(String key,long waitTime,long time,long threadId) {
+        return tryLockAsync(key, () -> getFairLock(key), waitTime, time, threadId);
+    }
+
+    @Override
+    public CompletableFuture<Void> unlockFairAsync(String key,long threadId) {
+        return unlockAsync(key, () -> getFairLock(key), threadId);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> tryReadLockAsync(String key,long waitTime,long time,long threadId) {
+        return tryLockAsync(key, () -> redisson.getReadWriteLock(key).readLock(), waitTime, time, threadId);
+    }
+
+    @Override
+    public CompletableFuture<Void> unlockReadAsync(String key,long threadId) {
+        return unlockAsync(key, () -> redisson.getReadWriteLock(key).readLock(), threadId);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> tryWriteLockAsync(String key,long waitTime,long time,long threadId) {
+        return tryLockAsync(key, () -> redisson.getReadWriteLock(key).writeLock(), waitTime, time, threadId);
+    }
+
+    @Override
+    public CompletableFuture<Void> unlockWriteAsync(String key,long threadId) {
+        return unlockAsync(key, () -> redisson.getReadWriteLock(key).writeLock(), threadId);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> tryAcquireSemaphoreAsync(String key,int val,long waitTime) {
+        try {
+            RSemaphore semaphore = redisson.getSemaphore(key);
+            // 取消后才获取到的许可归还
+            return toCompletableFuture(semaphore.tryAcquireAsync(val, waitTime, TimeUnit.SECONDS), key, "获取信号量失败。key:{}",
+                    acquired -> {
+                        if (Boolean.TRUE.equals(acquired)) {
+                            semaphore.releaseAsync(val);
+                        }
+                    });
+        }catch (Exception ex) {
+            log.error("获取信号量失败。key:{}",key,ex);
+            return failed(ex);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> releaseSemaphoreAsync(String key,int val) {
+        try {
+            return toCompletableFuture(redisson.getSemaphore(key).releaseAsync(val), key, "释放信号量失败。key:{}", null);
+        }catch (Exception ex) {
+            log.error("释放信号量失败。key:{}",key,ex);
+            return failed(ex);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Boolean> trySetCountAsync(String key,long val) {
+        try {
+            return toCompletableFuture(redisson.getCountDownLatch(key).trySetCountAsync(val), key, "闭锁设置初始值失败。key:{}", null);
+        }catch (Exception ex) {
+            log.error("闭锁设置初始值失败。key:{}",key,ex);
+            return failed(ex);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> countDownAsync(String key) {
+        try {
+            return toCompletableFuture(redisson.getCountDownLatch(key).countDownAsync(), key, "闭锁计数减一失败。key:{}", null);
+        }catch (Exception ex) {
+            log.error("闭锁计数减一失败。key:{}",key,ex);
+            return failed(ex);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Long> getCountAsync(String key) {
+        try {
+            return toCompletableFuture(redisson.getCountDownLatch(key).getCountAsync(), key, "获取闭锁计数失败。key:{}", null);
+        }catch (Exception ex) {
+            log.error("获取闭锁计数失败。key:{}",key,ex);
+            return failed(ex);
+        }
+    }
+
+    private CompletableFuture<Boolean> tryLockAsync(String key, Supplier<RLock> lockSupplier, long waitTime, long time, long threadId) {
+        try {
+            RLock lock = lockSupplier.get();
+            // 取消后才拿到的锁直接释放，避免无人持有的锁一直占用到过期
+            return toCompletableFuture(lock.tryLockAsync(waitTime, time, TimeUnit.SECONDS, threadId), key, "分布式锁上锁失败。key:{}",
+                    acquired -> {
+                        if (Boolean.TRUE.equals(acquired)) {
+                            lock.unlockAsync(threadId);
+                        }
+                    });
+        }catch (Exception ex) {
+            log.error("分布式锁上锁失败。key:{}",key,ex);
+            return failed(ex);
+        }
+    }
+
+    private CompletableFuture<Void> unlockAsync(String key, Supplier<RLock> lockSupplier, long threadId) {
+        try {
+            return toCompletableFuture(lockSupplier.get().unlockAsync(threadId), key, "分布式锁解锁失败。key:{}", null);
+        }catch (Exception ex) {
+            log.error("分布式锁解锁失败。key:{}",key,ex);
+            return failed(ex);
+        }
+    }
+
+    /**
+     * RFuture转CompletableFuture：cancel时取消redisson请求，redisson异常时记录日志并异常结束
+     * @param onCancelled 取消之后redisson请求才成功时的补偿（如释放已拿到的锁），可为null
+     */
+    private <T> CompletableFuture<T> toCompletableFuture(RFuture<T> rFuture, String key, String errorMessage, Consumer<T> onCancelled) {
+        CompletableFuture<T> future = new CompletableFuture<T>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                rFuture.cancel(false);
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+        rFuture.addListener(f -> {
+            if (f.isSuccess()) {
+                if (!future.complete(f.getNow()) && onCancelled != null) {
+                    onCancelled.accept(f.getNow());
+                }
+            } else if (!future.isCancelled()) {
+                log.error(errorMessage, key, f.cause());
+                future.completeExceptionally(f.cause());
+            }
+        });
+        return future;
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable ex) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(ex);
+        return future;
+    }
+
+    //===============================fencing令牌（Fencing Token）=====================================
+
+    /**
+     * 加锁并获取fencing令牌（可重入锁--过期类型（看门狗失效））
+     * @param key redis锁key
+     * @param time 锁自动释放时间（单位S）
+     * @return fencing令牌，上锁失败返回null
+     */
+    @Override
+    public Long addFencedLock(String key,long time) {
+        return Boolean.TRUE.equals(addLock(key, time)) ? fence(key) : null;
+    }
+
+    /**
+     * 尝试加锁并获取fencing令牌（可重入锁--过期（看门狗失效）--等待类型）
+     * @param key redis锁key
+     * @param waitTime 最多等待时间（单位S）
+     * @param time 锁自动释放时间（单位S）
+     * @return fencing令牌，超时或上锁失败返回null
+     */
+    @Override
+    public Long addFencedTryLock(String key,long waitTime,long time) {
+        return Boolean.TRUE.equals(addTryLock(key, waitTime, time)) ? fence(key) : null;
+    }
+
+    /**
+     * 尝试上锁并获取fencing令牌（锁句柄）
+     * @param key redis锁key
+     * @param waitTime 最多等待时间（单位S）
+     * @param time 锁自动释放时间（单位S）
+     * @return 锁句柄
+     */
+    @Override
+    public LockHandle tryAcquireFencedLock(String key,long waitTime,long time) {
+        LockHandle handle = tryAcquireLock(key, waitTime, time);
+        if (!handle.isAcquired()) {
+            return handle;
+        }
+        Long token = nextFencingToken(key);
+        if (token == null) {
+            handle.close();
+            return new LockHandle(key, null);
+        }
+        return handle.withFencingToken(token);
+    }
+
+    /**
+     * 持锁后获取令牌，获取失败时解锁（没有令牌的持有者无法安全写入）
+     */
+    private Long fence(String key) {
+        Long token = nextFencingToken(key);
+        if (token == null) {
+            removeLock(key);
+        }
+        return token;
+    }
+
+    /**
+     * 当前线程仍持有锁时递增令牌，否则返回null（锁已过期）
+     * 递增前后都检查锁仍被当前线程持有：持有者字段只有当前线程能重新写入，递增后仍持有说明递增期间锁没有易主，
+     * 令牌一定大于之前所有持有者的令牌；递增后锁已过期时丢弃该令牌（计数器出现空号不影响单调性）
+     */
+    private Long nextFencingToken(String key) {
+        try {
+            RLock lock = getLock(key);
+            if (!lock.isHeldByCurrentThread()) {
+                log.error("获取fencing令牌失败，锁已过期。key:{}",key);
+                return null;
+            }
+            Long token = stringRedisTemplate.opsForValue().increment(fencingKey(key), 1);
+            if (!lock.isHeldByCurrentThread()) {
+                log.error("获取fencing令牌失败，锁已过期。key:{}",key);
+                return null;
+            }
+            return token;
+        }catch (Exception ex) {
+            log.error("获取fencing令牌失败。key:{}",key,ex);
+        }
+        return null;
+    }
+
+    /**
+     * 令牌计数器key，与锁key在同一个slot：key自带hash tag时直接加后缀，否则把整个key作为hash tag
+     * （key含'}'但没有hash tag时无法放到同一个slot）
+     */
+    static String fencingKey(String key) {
+        int start = key.indexOf('{');
+        boolean hashTag = start >= 0 && key.indexOf('}', start + 1) > start + 1;
+        return (hashTag || key.indexOf('}') >= 0 ? key : "{" + key + "}") + ":fencing";
+    }
+
+    /**
+     * 当前线程持有的锁
+     */
+    private static class HeldLock {
+        /**
+         * 本地重入次数（句柄数量）
+         */
+        private int count;
+        /**
+         * redis上锁次数（租期到期后重新上锁会增加），解锁时逐次释放
+         */
+        private int redisHolds;
+        /**
+         * 两级锁的本地锁及上锁次数
+         */
+        private ReentrantLock localLock;
+        private int localHolds;
+        /**
+         * 最近一次redis上锁的租期到期时间（System.nanoTime），看门狗续期时为null
+         */
+        private Long leaseDeadline;
+
+        boolean isLeaseValid() {
+            return leaseDeadline == null || System.nanoTime() - leaseDeadline < 0;
+        }
+    }
+
+    @FunctionalInterface
+    private interface LockAcquirer {
+        boolean acquire(RLock lock) throws InterruptedException;
+    }
 }
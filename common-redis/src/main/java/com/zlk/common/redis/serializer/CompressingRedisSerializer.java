@@ -0,0 +1,136 @@
+package com.zlk.common.redis.serializer;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author likuan.zhou
+ * @title: CompressingRedisSerializer
+ * @projectName common
+ * @description: LZ4压缩序列化包装，序列化结果超过阈值时压缩
+ * 存储格式（首字节区分）：
+ * 0x1F + 原始长度（4字节）+ LZ4数据：压缩值；
+ * 0x1E + 原始数据：未压缩且原始数据首字节恰好为0x1E/0x1F（转义）；
+ * 其他：未压缩的原始数据，与未启用压缩前写入的数据相同，因此压缩与未压缩的数据可以混合存在（灰度上线）。
+ * json序列化的数据首字节不会是这两个控制字符；kryo注册ID为28、29的类在启用压缩前写入的数据会与之冲突，需避开。
+ * @date 2021/10/18/016 19:05
+ */
+public class CompressingRedisSerializer implements RedisSerializer<Object> {
+
+    private static final byte COMPRESSED = 0x1F;
+
+    private static final byte ESCAPED = 0x1E;
+
+    private static final int HEADER_LENGTH = 5;
+
+    private final RedisSerializer<Object> delegate;
+
+    private final int threshold;
+
+    private final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+
+    private final LZ4SafeDecompressor decompressor = LZ4Factory.fastestInstance().safeDecompressor();
+
+    private final DistributionSummary compressionRatio;
+
+    private final Timer compressTime;
+
+    private final Timer decompressTime;
+
+    /**
+     * @param delegate 实际的序列化
+     * @param threshold 序列化结果超过该字节数才压缩
+     * @param meterRegistry 指标注册
+     */
+    public CompressingRedisSerializer(RedisSerializer<Object> delegate, int threshold, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.threshold = threshold;
+        this.compressionRatio = DistributionSummary.builder("common.redis.compression.ratio")
+                .description("压缩后大小/压缩前大小")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.compressTime = Timer.builder("common.redis.compression.time")
+                .tag("operation", "compress")
+                .register(meterRegistry);
+        this.decompressTime = Timer.builder("common.redis.compression.time")
+                .tag("operation", "decompress")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        byte[] bytes = delegate.serialize(value);
+        if (bytes == null || bytes.length == 0) {
+            return bytes;
+        }
+        if (bytes.length > threshold) {
+            long start = System.nanoTime();
+            byte[] compressed = new byte[HEADER_LENGTH + compressor.maxCompressedLength(bytes.length)];
+            int compressedLength = compressor.compress(bytes, 0, bytes.length, compressed, HEADER_LENGTH);
+            compressTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            compressionRatio.record((double) compressedLength / bytes.length);
+            // 压缩后没有变小则按未压缩存储
+            if (HEADER_LENGTH + compressedLength < bytes.length) {
+                compressed[0] = COMPRESSED;
+                compressed[1] = (byte) (bytes.length >>> 24);
+                compressed[2] = (byte) (bytes.length >>> 16);
+                compressed[3] = (byte) (bytes.length >>> 8);
+                compressed[4] = (byte) bytes.length;
+                byte[] result = new byte[HEADER_LENGTH + compressedLength];
+                System.arraycopy(compressed, 0, result, 0, result.length);
+                return result;
+            }
+        }
+        if (bytes[0] == COMPRESSED || bytes[0] == ESCAPED) {
+            byte[] escaped = new byte[bytes.length + 1];
+            escaped[0] = ESCAPED;
+            System.arraycopy(bytes, 0, escaped, 1, bytes.length);
+            return escaped;
+        }
+        return bytes;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return delegate.deserialize(bytes);
+        }
+        if (bytes[0] == ESCAPED) {
+            byte[] raw = new byte[bytes.length - 1];
+            System.arraycopy(bytes, 1, raw, 0, raw.length);
+            return delegate.deserialize(raw);
+        }
+        if (bytes[0] != COMPRESSED) {
+            return delegate.deserialize(bytes);
+        }
+        if (bytes.length < HEADER_LENGTH) {
+            throw new SerializationException("压缩数据格式错误，长度：" + bytes.length);
+        }
+        int length = ((bytes[1] & 0xFF) << 24) | ((bytes[2] & 0xFF) << 16) | ((bytes[3] & 0xFF) << 8) | (bytes[4] & 0xFF);
+        if (length < 0) {
+            throw new SerializationException("压缩数据格式错误，原始长度：" + length);
+        }
+        long start = System.nanoTime();
+        byte[] raw = new byte[length];
+        int decompressed;
+        try {
+            decompressed = decompressor.decompress(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH, raw, 0, length);
+        } catch (Exception ex) {
+            throw new SerializationException("LZ4解压失败", ex);
+        }
+        // 数据被截断时可能在分块边界处正常结束，需校验解压长度
+        if (decompressed != length) {
+            throw new SerializationException("LZ4解压长度不一致，原始长度：" + length + "，解压长度：" + decompressed);
+        }
+        decompressTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return delegate.deserialize(raw);
+    }
+}
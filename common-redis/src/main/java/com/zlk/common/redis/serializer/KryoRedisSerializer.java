@@ -0,0 +1,96 @@
+package com.zlk.common.redis.serializer;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import org.objenesis.strategy.StdInstantiatorStrategy;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author likuan.zhou
+ * @title: KryoRedisSerializer
+ * @projectName common
+ * @description: Kryo二进制序列化（替代Jackson默认类型的json序列化）
+ * 已注册的类只写入注册ID，未注册的类写入类名（不强制注册）。注册ID由注册顺序决定，所有节点必须使用相同的注册列表和顺序。
+ * 与json序列化的数据不兼容，切换序列化方式时需使用新的key或清空旧数据。
+ * @date 2021/10/18/016 19:05
+ */
+public class KryoRedisSerializer implements RedisSerializer<Object> {
+
+    private static final byte[] EMPTY_ARRAY = new byte[0];
+
+    /**
+     * 线程缓冲区超过该大小后不再复用，避免个别大value长期占用内存
+     */
+    private static final int MAX_POOLED_BUFFER_SIZE = 64 * 1024;
+
+    private final List<Class<?>> registrations;
+
+    /**
+     * Kryo非线程安全，每个线程一个实例
+     */
+    private final ThreadLocal<Kryo> kryos = ThreadLocal.withInitial(this::createKryo);
+
+    private final ThreadLocal<Output> outputs = ThreadLocal.withInitial(() -> new Output(4096, -1));
+
+    /**
+     * @param classNames 需要注册的类（全限定名），按顺序分配注册ID
+     */
+    public KryoRedisSerializer(String... classNames) {
+        List<Class<?>> classes = new ArrayList<>(classNames.length);
+        for (String className : classNames) {
+            try {
+                classes.add(Class.forName(className.trim()));
+            } catch (ClassNotFoundException ex) {
+                throw new IllegalArgumentException("Kryo注册类不存在：" + className, ex);
+            }
+        }
+        this.registrations = classes;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return EMPTY_ARRAY;
+        }
+        Output output = outputs.get();
+        try {
+            output.clear();
+            kryos.get().writeClassAndObject(output, value);
+            return output.toBytes();
+        } catch (Exception ex) {
+            throw new SerializationException("Kryo序列化失败：" + value.getClass().getName(), ex);
+        } finally {
+            if (output.getBuffer().length > MAX_POOLED_BUFFER_SIZE) {
+                outputs.remove();
+            }
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            return kryos.get().readClassAndObject(new Input(bytes));
+        } catch (Exception ex) {
+            throw new SerializationException("Kryo反序列化失败", ex);
+        }
+    }
+
+    private Kryo createKryo() {
+        Kryo kryo = new Kryo();
+        kryo.setRegistrationRequired(false);
+        // 没有无参构造器的类通过objenesis实例化（不可变集合如Collections.unmodifiableList、Arrays.asList在反序列化时add会失败，不支持）
+        kryo.setInstantiatorStrategy(new Kryo.DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
+        for (Class<?> clazz : registrations) {
+            kryo.register(clazz);
+        }
+        return kryo;
+    }
+}
@@ -0,0 +1,93 @@
+package com.zlk.common.redis.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author likuan.zhou
+ * @title: PipelineResult
+ * @projectName common
+ * @description: 管道批量执行的结果，按命令执行顺序通过序号读取，读取时校验类型
+ * 如管道中依次执行incr、get、hasKey，则getLong(0)、get(1, User.class)、getBoolean(2)。
+ * 通过{@link RedisUtil#pipeline}获得。
+ * @date 2021/10/18/016 19:05
+ */
+public final class PipelineResult {
+
+    private final List<Object> results;
+
+    PipelineResult(List<Object> results) {
+        this.results = results == null ? Collections.emptyList() : results;
+    }
+
+    /**
+     * 命令数量
+     */
+    public int size() {
+        return results.size();
+    }
+
+    /**
+     * 第index条命令的结果
+     * @param type 结果类型（值类命令为反序列化后的类型）
+     * @return 结果，命令无返回值或key不存在时为null
+     * @throws ClassCastException 结果不是type类型
+     */
+    public <T> T get(int index, Class<T> type) {
+        Object result = results.get(index);
+        if (result != null && !type.isInstance(result)) {
+            throw new ClassCastException("管道第" + index + "条命令的结果类型为" + result.getClass().getName() + "，不是" + type.getName());
+        }
+        return type.cast(result);
+    }
+
+    /**
+     * 第index条命令的数值结果（incr/decr/sSet/lSet/del等）
+     */
+    public Long getLong(int index) {
+        Number result = get(index, Number.class);
+        return result == null ? null : result.longValue();
+    }
+
+    /**
+     * 第index条命令的数值结果（incrByFloat/hIncr(double)/zsIncr/zScore等）
+     */
+    public Double getDouble(int index) {
+        Number result = get(index, Number.class);
+        return result == null ? null : result.doubleValue();
+    }
+
+    /**
+     * 第index条命令的布尔结果（expire/hasKey/setNx/sHasKey等）
+     */
+    public Boolean getBoolean(int index) {
+        return get(index, Boolean.class);
+    }
+
+    /**
+     * 第index条命令的字符串结果
+     */
+    public String getString(int index) {
+        return get(index, String.class);
+    }
+
+    /**
+     * 全部结果转为同一类型（如管道中全部为get同类型的值）
+     * @throws ClassCastException 存在不是type类型的结果
+     */
+    public <T> List<T> getAll(Class<T> type) {
+        List<T> list = new ArrayList<>(results.size());
+        for (int i = 0; i < results.size(); i++) {
+            list.add(get(i, type));
+        }
+        return list;
+    }
+
+    /**
+     * 原始结果，按执行顺序
+     */
+    public List<Object> asList() {
+        return Collections.unmodifiableList(results);
+    }
+}
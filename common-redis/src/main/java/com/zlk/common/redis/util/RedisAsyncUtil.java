@@ -0,0 +1,593 @@
+package com.zlk.common.redis.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * @author likuan.zhou
+ * @title: RedisAsyncUtil
+ * @projectName common
+ * @description: redis异步工具类（基于lettuce响应式连接，不占用调用线程）
+ * 方法与RedisUtil一一对应，返回CompletableFuture；失败时记录日志并按RedisUtil的约定返回false/null（不以异常结束）。
+ * 以下RedisUtil方法不提供异步版本：读主库（*FromMaster，响应式连接不区分读写节点）、getOrLoad（需要分布式锁与等待）、
+ * 流式遍历（hScan/lStream/sScan/zsScan/scan/deleteByPattern，结果为持有连接的Stream）、pipeline（响应式命令本身即按管道发送）。
+ * 回调在lettuce的IO线程中执行，回调中不要做阻塞操作，需要时使用thenXxxAsync切换线程池。
+ * @date 2021/10/18/016 19:05
+ */
+@Component
+@Slf4j
+public class RedisAsyncUtil {
+
+    @Autowired
+    private ReactiveRedisTemplate<String,Object> reactiveRedisTemplate;
+
+    /**
+     * 删除缓存
+     * @param key redis键
+     * @return 执行结果 true成功，false失败
+     */
+    public CompletableFuture<Boolean> del(String key){
+        return toFuture(reactiveRedisTemplate.delete(key).map(count -> count > 0), false, "删除redis缓存失败", key);
+    }
+
+    /**
+     * 批量删除缓存
+     * @param keys redis键set集合
+     * @return 删除的数量
+     */
+    public CompletableFuture<Long> del(Set<String> keys){
+        return toFuture(reactiveRedisTemplate.delete(keys.toArray(new String[0])), null, "删除redis缓存失败", keys);
+    }
+
+    /**
+     * 设置过期时间
+     * @param key redis键
+     * @param time 过期时间（单位秒）
+     * @return 执行结果 true成功，false失败
+     */
+    public CompletableFuture<Boolean> expire(String key, long time){
+        return toFuture(reactiveRedisTemplate.expire(key, Duration.ofSeconds(time)), false, "设置redis过期时间失败", key);
+    }
+
+    //==========================String==============================
+    /**
+     * 入普通缓存（字符串类型）
+     * @param key redis键
+     * @param value 值
+     * @param time 过期时间（单位秒）
+     * @return 执行结果 true成功，false失败
+     */
+    public CompletableFuture<Boolean> set(String key,Object value,long time){
+        return toFuture(reactiveRedisTemplate.opsForValue().set(key, value, Duration.ofSeconds(time)), false, "写入redis缓存失败", key);
+    }
+
+    /**
+     * 入普通缓存（字符串类型）
+     * @param key redis键
+     * @param value 值
+     * @return 执行结果 true成功，false失败
+     */
+    public CompletableFuture<Boolean> set(String key,Object value){
+        return toFuture(reactiveRedisTemplate.opsForValue().set(key, value), false, "写入redis缓存失败", key);
+    }
+
+    /**
+     * 通过key获取普通缓存（字符串类型）
+     * @param key redis键
+     * @return 值，不存在为null
+     */
+    public CompletableFuture<Object> get(String key){
+        return toFuture(reactiveRedisTemplate.opsForValue().get(key), null, "获取redis缓存失败", key);
+    }
+
+    /**
+     * 批量获取普通缓存（MGET）
+     * @param keys redis键
+     * @return 与keys顺序一致的值，不存在的key为null
+     */
+    public CompletableFuture<List<Object>> mGet(List<String> keys){
+        return toFuture(reactiveRedisTemplate.opsForValue().multiGet(keys), null, "批量获取redis缓存失败", keys);
+    }
+
+    /**
+     * 批量入普通缓存（MSET，一条命令）
+     * @param map key-value
+     * @return 执行结果 true成功，false失败
+     */
+    public CompletableFuture<Boolean> mSet(Map<String,Object> map){
+        return toFuture(reactiveRedisTemplate.opsForValue().multiSet(map), false, "批量写入redis缓存失败", map.keySet());
+    }
+
+    /**
+     * 批量入普通缓存（SET EX，命令在同一连接上连续发送，不等待逐个响应）
+     * @param map key-value
+     * @param time 过期时间（单位秒）
+     * @return 执行结果 true成功，false失败
+     */
+    public CompletableFuture<Boolean> mSet(Map<String,Object> map, long time){
+        return toFuture(Flux.fromIterable(map.entrySet())
+                        .flatMap(entry -> reactiveRedisTemplate.opsForValue().set(entry.getKey(), entry.getValue(), Duration.ofSeconds(time)))
+                        .then(Mono.just(true)),
+                false, "批量写入redis缓存失败", map.keySet());
+    }
+
+    /**
+     * 批量设置过期时间（命令在同一连接上连续发送，不等待逐个响应）
+     * @param keys redis键
+     * @param time 过期时间（单位秒）
+     * @return 执行结果 true成功，false失败
+     */
+    public CompletableFuture<Boolean> mExpire(Collection<String> keys, long time){
+        return toFuture(Flux.fromIterable(keys)
+                        .flatMap(key -> reactiveRedisTemplate.expire(key, Duration.ofSeconds(time)))
+                        .then(Mono.just(true)),
+                false, "批量设置redis过期时间失败", keys);
+    }
+
+    //==========================hash（MAP）==============================
+    /**
+     * 入map到缓存（hash表），写入与设置过期时间原子执行
+     * @param key redis键
+     * @param map map值
+     * @param time 过期时间（单位秒）
+     * @return 执行结果 true成功，false失败
+     */
+    public <T,V> CompletableFuture<Boolean> hmSet(String key, Map<T,V> map, long time){
+        List<ByteBuffer> args = new ArrayList<>(map.size() * 2);
+        for (Map.Entry<T,V> entry : map.entrySet()) {
+            args.add(rawHashKey(entry.getKey()));
+            args.add(rawValue(entry.getValue()));
+        }
+        return toFuture(writeWithExpire(key, "HSET", 2, time, args), false, "写入redis缓存失败", key);
+    }
+
+    /**
+     * 入map到缓存（hash表）
+     * @param key redis键
+     * @param map map值
+     * @return 执行结果 true成功，false失败
+     */
+    public <T,V> CompletableFuture<Boolean> hmSet(String key, Map<T,V> map){
+        return toFuture(reactiveRedisTemplate.opsForHash().putAll(key, map), false, "写入redis缓存失败", key);
+    }
+
+    /**
+     * 向hash表中放入数据，写入与设置过期时间原子执行（hash表）
+     * @param key redis键
+     * @param item map的item键
+     * @param value map的item值
+     * @param time 过期时间（单位秒）
+     * @return 执行结果 true成功，false失败
+     */
+    public CompletableFuture<Boolean> hSet(String key,Object item,Object value,long time){
+        return toFuture(writeWithExpire(key, "HSET", 2, time, Arrays.asList(rawHashKey(item), rawValue(value))), false, "写入redis缓存失败", key);
+    }
+
+    /**
+     * 向hash表中放入数据（hash表）
+     * @param key redis键
+     * @param item map的item键
+     * @param value map的item值
+     * @return 执行结果 true成功，false失败
+     */
+    public CompletableFuture<Boolean> hSet(String key,Object item,Object value){
+        return toFuture(reactiveRedisTemplate.opsForHash().put(key, item, value), false, "写入redis缓存失败", key);
+    }
+
+    /**
+     * 获取map中item对应的值（hash表）
+     * @param key redis键
+     * @param item map的item键
+     * @return map的item值
+     */
+    public CompletableFuture<Object> hGet(String key,Object item){
+        return toFuture(reactiveRedisTemplate.opsForHash().get(key, item), null, "获取redis缓存失败", key);
+    }
+
+    /**
+     * 获取key对应整个map（hash表）
+     * @param key redis键
+     * @return key对应整个map
+     */
+    public CompletableFuture<Map<Object,Object>> hmGet(String key){
+        return toFuture(reactiveRedisTemplate.opsForHash().entries(key).collectMap(e -> e.getKey(), e -> e.getValue()),
+                null, "获取redis缓存失败", key);
+    }
+
+    /**
+     * 删除map中的item（hash表）
+     * @param key redis键
+     * @param items map的item键
+     * @return 删除的数量
+     */
+    public CompletableFuture<Long> hDel(String key,Object... items){
+        return toFuture(reactiveRedisTemplate.opsForHash().remove(key, items), null, "删除redis缓存失败", key);
+    }
+
+    /**
+     * hash递增 如果不存在,就会创建一个 并把新增后的值返回（hash表）
+     * @param key redis键
+     * @param item map的item键
+     * @param by 要增加几(大于0)
+     * @return 增加后的值
+     */
+    public CompletableFuture<Long> hIncr(String key, Object item, long by){
+        return toFuture(reactiveRedisTemplate.opsForHash().increment(key, item, by), null, "redis递增失败", key);
+    }
+
+    /**
+     * hash递增 如果不存在,就会创建一个 并把新增后的值返回（hash表）
+     * @param key redis键
+     * @param item map的item键
+     * @param by 要增加几(大于0)
+     * @return 增加后的值
+     */
+    public CompletableFuture<Double> hIncr(String key, Object item, double by){
+        return toFuture(reactiveRedisTemplate.opsForHash().increment(key, item, by), null, "redis递增失败", key);
+    }
+
+    /**
+     * hash递减（hash表）
+     * @param key redis键
+     * @param item map的item键
+     * @param by 要减少几(大于0)
+     * @return 减少后的值
+     */
+    public CompletableFuture<Long> hDecr(String key, Object item, long by){
+        return toFuture(reactiveRedisTemplate.opsForHash().increment(key, item, -by), null, "redis递减失败", key);
+    }
+
+    /**
+     * hash递减（hash表）
+     * @param key redis键
+     * @param item map的item键
+     * @param by 要减少几(大于0)
+     * @return 减少后的值
+     */
+    public CompletableFuture<Double> hDecr(String key, Object item, double by){
+        return toFuture(reactiveRedisTemplate.opsForHash().increment(key, item, -by), null, "redis递减失败", key);
+    }
+
+    /**
+     * 判断hash表中是否有该项的值（hash表）
+     * @param key redis键
+     * @param item map的item键
+     * @return true 存在 false不存在
+     */
+    public CompletableFuture<Boolean> hHasKey(String key, Object item){
+        return toFuture(reactiveRedisTemplate.opsForHash().hasKey(key, item), false, "获取redis缓存失败", key);
+    }
+
+    //==========================链表list==============================
+    /**
+     * 从右边添加list，写入与设置过期时间原子执行（链表list）
+     * @param key redis键
+     * @param list list链表
+     * @param time 过期时间（单位秒）
+     * @return 执行结果 true成功，false失败
+     */
+    public <T> CompletableFuture<Boolean> llSet(String key, List<T> list, long time){
+        List<ByteBuffer> args = new ArrayList<>(list.size());
+        for (T value : list) {
+            args.add(rawValue(value));
+        }
+        return toFuture(writeWithExpire(key, "RPUSH", 1, time, args), false, "写入redis缓存失败", key);
+    }
+
+    /**
+     * 从右边添加list（链表list）
+     * @param key redis键
+     * @param list list链表
+     * @return 执行结果 true成功，false失败
+     */
+    public <T> CompletableFuture<Boolean> llSet(String key, List<T> list){
+        return toFuture(reactiveRedisTemplate.opsForList().rightPushAll(key, new ArrayList<>(list)).map(size -> true),
+                false, "写入redis缓存失败", key);
+    }
+
+    /**
+     * 从右边添加一个值，写入与设置过期时间原子执行（链表list）
+     * @param key redis键
+     * @param value 值
+     * @param time 过期时间（单位秒）
+     * @return 执行结果 true成功，false失败
+     */
+    public CompletableFuture<Boolean> lSet(String key, Object value, long time){
+        return toFuture(writeWithExpire(key, "RPUSH", 1, time, Collections.singletonList(rawValue(value))), false, "写入redis缓存失败", key);
+    }
+
+    /**
+     * 从右边添加一个值（链表list）
+     * @param key redis键
+     * @param value 值
+     * @return 执行结果 true成功，false失败
+     */
+    public CompletableFuture<Boolean> lSet(String key, Object value){
+        return toFuture(reactiveRedisTemplate.opsForList().rightPush(key, value).map(size -> true), false, "写入redis缓存失败", key);
+    }
+
+    /**
+     * 获取链表中索引起止位置段（链表list）
+     * @param key redis键
+     * @param start 开始位置
+     * @param end 结束位置
+     * @return 链表元素
+     */
+    public CompletableFuture<List<Object>> lGet(String key,long start,long end){
+        return toFuture(reactiveRedisTemplate.opsForList().range(key, start, end).collectList(), null, "获取redis缓存失败", key);
+    }
+
+    /**
+     * 通过索引 获取list中的值（链表list）
+     * @param key redis键
+     * @param index 索引 index>=0时， 0 表头，1 第二个元素；index<0时，-1，表尾，-2倒数第二个元素
+     * @return 值
+     */
+    public CompletableFuture<Object> lGetIndex(String key, long index){
+        return toFuture(reactiveRedisTemplate.opsForList().index(key, index), null, "获取redis缓存失败", key);
+    }
+
+    /**
+     * 获取链表长度（链表list）
+     * @param key redis键
+     * @return 长度
+     */
+    public CompletableFuture<Long> lSize(String key){
+        return toFuture(reactiveRedisTemplate.opsForList().size(key), null, "获取redis缓存失败", key);
+    }
+
+    /**
+     * 根据索引修改list中的某条数据（链表list）
+     * @param key redis键
+     * @param index 索引
+     * @param value 值
+     * @return 执行结果 true成功，false失败
+     */
+    public CompletableFuture<Boolean> lUpdateIndex(String key, long index, Object value){
+        return toFuture(reactiveRedisTemplate.opsForList().set(key, index, value), false, "写入redis缓存失败", key);
+    }
+
+    /**
+     * 删除列表中值为value的元素，总共删除count次（链表list）
+     * @param key redis键
+     * @param index 删除次数（count>0从表头开始，count<0从表尾开始，0删除全部）
+     * @param value 值
+     * @return 移除的个数
+     */
+    public CompletableFuture<Long> lRemove(String key, long index, Object value){
+        return toFuture(reactiveRedisTemplate.opsForList().remove(key, index, value), 0L, "删除redis缓存失败", key);
+    }
+
+    /**
+     * 删除list首尾，只保留 [start, end] 之间的值，闭区间（链表list）
+     * @param key redis键
+     * @param start 索引开始
+     * @param end 索引结束
+     * @return 执行结果 true成功，false失败
+     */
+    public CompletableFuture<Boolean> lTrim(String key, long start, long end){
+        return toFuture(reactiveRedisTemplate.opsForList().trim(key, start, end), false, "删除redis缓存失败", key);
+    }
+
+    //==========================无序Set==============================
+    /**
+     * 新增无序Set，写入与设置过期时间原子执行（无序Set）
+     * 与RedisUtil一致，set整体作为一个成员写入
+     * @param key redis键
+     * @param set set
+     * @param time 过期时间（单位秒）
+     * @return 执行结果 true成功，false失败
+     */
+    public CompletableFuture<Boolean> sSet(String key, Set<Object> set, long time){
+        return toFuture(writeWithExpire(key, "SADD", 1, time, Collections.singletonList(rawValue(set))), false, "写入redis缓存失败", key);
+    }
+
+    /**
+     * 新增无序Set（无序Set）
+     * 与RedisUtil一致，set整体作为一个成员写入
+     * @param key redis键
+     * @param set set
+     * @return 执行结果 true成功，false失败
+     */
+    public CompletableFuture<Boolean> sSet(String key, Set<Object> set){
+        return toFuture(reactiveRedisTemplate.opsForSet().add(key, set).map(count -> true), false, "写入redis缓存失败", key);
+    }
+
+    /**
+     * 将数据放入set缓存，写入与设置过期时间原子执行（无序Set）
+     * @param key redis键
+     * @param value 值
+     * @param time 过期时间（单位秒）
+     * @return 执行结果 true成功，false失败
+     */
+    public CompletableFuture<Boolean> sSet(String key, Object value, long time){
+        return toFuture(writeWithExpire(key, "SADD", 1, time, Collections.singletonList(rawValue(value))), false, "写入redis缓存失败", key);
+    }
+
+    /**
+     * 将数据放入set缓存（无序Set）
+     * @param key redis键
+     * @param values 值 可以是多个
+     * @return 执行结果 true成功，false失败
+     */
+    public CompletableFuture<Boolean> sSet(String key, Object... values){
+        return toFuture(reactiveRedisTemplate.opsForSet().add(key, values).map(count -> true), false, "写入redis缓存失败", key);
+    }
+
+    /**
+     * 获取set（无序Set）
+     * @param key redis键
+     * @return set
+     */
+    public CompletableFuture<Set<Object>> sGet(String key){
+        return toFuture(reactiveRedisTemplate.opsForSet().members(key).collect(HashSet::new, Set::add), null, "获取redis缓存失败", key);
+    }
+
+    /**
+     * 获取set缓存的长度（无序Set）
+     * @param key redis键
+     * @return 长度
+     */
+    public CompletableFuture<Long> sSize(String key){
+        return toFuture(reactiveRedisTemplate.opsForSet().size(key), null, "获取redis缓存失败", key);
+    }
+
+    /**
+     * 移除set中的值（无序Set）
+     * @param key redis键
+     * @param values 值 可以是多个
+     * @return 移除的个数
+     */
+    public CompletableFuture<Long> sRemove(String key, Object... values){
+        return toFuture(reactiveRedisTemplate.opsForSet().remove(key, values), null, "删除redis缓存失败", key);
+    }
+
+    /**
+     * 移除set中值为set的成员（无序Set）
+     * 与RedisUtil一致，set整体作为一个成员移除
+     * @param key redis键
+     * @param set 值
+     * @return 移除的个数
+     */
+    public <T> CompletableFuture<Long> sRemove(String key, Set<T> set){
+        return toFuture(reactiveRedisTemplate.opsForSet().remove(key, set), null, "删除redis缓存失败", key);
+    }
+
+    //==========================有序Set==============================
+    /**
+     * 将数据放入有序set缓存，写入与设置过期时间原子执行（有序Set）
+     * @param key redis键
+     * @param value 值
+     * @param sort 分数
+     * @param time 过期时间（单位秒）
+     * @return 执行结果 true成功，false失败
+     */
+    public CompletableFuture<Boolean> zsSet(String key, Object value, long sort, long time){
+        return toFuture(writeWithExpire(key, "ZADD", 2, time,
+                Arrays.asList(ByteBuffer.wrap(String.valueOf(sort).getBytes(StandardCharsets.UTF_8)), rawValue(value))),
+                false, "写入redis缓存失败", key);
+    }
+
+    /**
+     * 将数据放入有序set缓存（有序Set）
+     * @param key redis键
+     * @param value 值
+     * @param sort 分数
+     * @return 执行结果 true成功，false失败
+     */
+    public CompletableFuture<Boolean> zsSet(String key, Object value, long sort){
+        return toFuture(reactiveRedisTemplate.opsForZSet().add(key, value, sort), false, "写入redis缓存失败", key);
+    }
+
+    /**
+     * 获取有序set缓存的长度（有序Set）
+     * @param key redis键
+     * @return 长度
+     */
+    public CompletableFuture<Long> zsSize(String key){
+        return toFuture(reactiveRedisTemplate.opsForZSet().size(key), null, "获取redis缓存失败", key);
+    }
+
+    /**
+     * 加减分（有序Set）
+     * @param key redis键
+     * @param value 值
+     * @param sore 加分数
+     * @return 加后分数
+     */
+    public <T> CompletableFuture<Double> zsIncr(String key, T value, long sore){
+        return toFuture(reactiveRedisTemplate.opsForZSet().incrementScore(key, value, sore), null, "redis加分失败", key);
+    }
+
+    /**
+     * 获取分数的值（有序Set）
+     * @param key redis键
+     * @param value 值
+     * @return 分数
+     */
+    public CompletableFuture<Double> zsGetScore(String key, Object value){
+        return toFuture(reactiveRedisTemplate.opsForZSet().score(key, value), null, "获取redis缓存失败", key);
+    }
+
+    /**
+     * 获取分数在[min,max]之间的值，按分数从小到大排序（有序Set）
+     * @param key redis键
+     * @param min 最小分数
+     * @param max 最大分数
+     * @return 值
+     */
+    public CompletableFuture<List<Object>> zsGet(String key, long min, long max){
+        return toFuture(reactiveRedisTemplate.opsForZSet().rangeByScore(key, Range.from(Range.Bound.inclusive((double) min)).to(Range.Bound.inclusive((double) max))).collectList(),
+                null, "获取redis缓存失败", key);
+    }
+
+    /**
+     * 移除有序set中的值（有序Set）
+     * @param key redis键
+     * @param values 值 可以是多个
+     * @return 移除的个数
+     */
+    public CompletableFuture<Long> zsRemove(String key, Object... values){
+        return toFuture(reactiveRedisTemplate.opsForZSet().remove(key, values), null, "删除redis缓存失败", key);
+    }
+
+    /**
+     * 移除有序set中值为set的成员（有序Set）
+     * 与RedisUtil一致，set整体作为一个成员移除
+     * @param key redis键
+     * @param set 值
+     * @return 移除的个数
+     */
+    public <T> CompletableFuture<Long> zsRemove(String key, Set<T> set){
+        return toFuture(reactiveRedisTemplate.opsForZSet().remove(key, set), null, "删除redis缓存失败", key);
+    }
+
+    /**
+     * 与RedisUtil相同的lua脚本，写入与设置过期时间原子执行
+     */
+    private Mono<Boolean> writeWithExpire(String key, String command, int argsPerCall, long time, List<ByteBuffer> args) {
+        ByteBuffer[] keysAndArgs = new ByteBuffer[args.size() + 4];
+        keysAndArgs[0] = reactiveRedisTemplate.getSerializationContext().getKeySerializationPair().write(key);
+        keysAndArgs[1] = ByteBuffer.wrap(command.getBytes(StandardCharsets.UTF_8));
+        keysAndArgs[2] = ByteBuffer.wrap(String.valueOf(time).getBytes(StandardCharsets.UTF_8));
+        keysAndArgs[3] = ByteBuffer.wrap(String.valueOf(argsPerCall).getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < args.size(); i++) {
+            keysAndArgs[i + 4] = args.get(i);
+        }
+        return reactiveRedisTemplate.execute(connection -> connection.scriptingCommands()
+                .eval(ByteBuffer.wrap(RedisUtil.WRITE_EXPIRE_SCRIPT), ReturnType.INTEGER, 1, keysAndArgs))
+                .then(Mono.just(true));
+    }
+
+    private ByteBuffer rawValue(Object value) {
+        return reactiveRedisTemplate.getSerializationContext().getValueSerializationPair().write(value);
+    }
+
+    private ByteBuffer rawHashKey(Object item) {
+        RedisSerializationContext.SerializationPair<Object> pair = reactiveRedisTemplate.getSerializationContext().getHashKeySerializationPair();
+        return pair.write(item);
+    }
+
+    /**
+     * Mono转CompletableFuture，失败时记录日志并返回fallback
+     */
+    private <T> CompletableFuture<T> toFuture(Mono<T> mono, T fallback, String message, Object key) {
+        return mono.onErrorResume(ex -> {
+            log.error(message + "。key:{}", key, ex);
+            return fallback == null ? Mono.empty() : Mono.just(fallback);
+        }).toFuture();
+    }
+}
@@ -1,12 +1,45 @@
 package com.zlk.common.redis.util;
 
+import com.google.common.collect.AbstractIterator;
+import com.zlk.common.redis.hotkey.HotKeyLocalCache;
+import com.zlk.common.redis.redisson.IRedissonLock;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanIterator;
+import io.lettuce.core.cluster.api.async.RedisAdvancedClusterAsyncCommands;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Component;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * @author likuan.zhou
@@ -18,9 +51,60 @@ import java.util.concurrent.TimeUnit;
 @Component
 @Slf4j
 public class RedisUtil {
+    /**
+     * 写入并设置过期时间（单命令原子执行，一次网络往返）
+     * ARGV[1]命令，ARGV[2]过期时间（秒），ARGV[3]每次调用命令的参数个数，其后为命令参数
+     */
+    static final byte[] WRITE_EXPIRE_SCRIPT = ("local n = tonumber(ARGV[3]) "
+            + "for i = 4, #ARGV, n do "
+            + "  if n == 1 then redis.call(ARGV[1], KEYS[1], ARGV[i]) "
+            + "  else redis.call(ARGV[1], KEYS[1], ARGV[i], ARGV[i + 1]) end "
+            + "end "
+            + "redis.call('EXPIRE', KEYS[1], ARGV[2]) "
+            + "return 1").getBytes(StandardCharsets.UTF_8);
+
     @Autowired
     private RedisTemplate<String,Object> redisTemplate;
 
+    /**
+     * 用于按名称获取只读写主库的masterRedisTemplate（不参与按类型注入），只有*FromMaster和getOrLoad需要
+     */
+    @Autowired
+    private BeanFactory beanFactory;
+
+    /**
+     * getOrLoad的回源锁（未引入redisson时为空，只有调用getOrLoad时才需要）
+     */
+    @Autowired
+    private ObjectProvider<IRedissonLock> redissonLock;
+
+    /**
+     * 热点key本地缓存（未开启时为null）
+     */
+    @Autowired(required = false)
+    private HotKeyLocalCache hotKeyLocalCache;
+
+    /**
+     * getOrLoad逻辑过期后旧值的保留时间（单位秒），保留期内由一个调用方回源，其余调用方返回旧值
+     */
+    @Value("${common.redis.load.stale-time:60}")
+    private long staleTime;
+    /**
+     * getOrLoad无旧值时等待回源锁的时间（单位秒）
+     */
+    @Value("${common.redis.load.lock-wait-time:3}")
+    private long loadLockWaitTime;
+    /**
+     * getOrLoad回源锁的自动释放时间（单位秒），应大于回源耗时
+     */
+    @Value("${common.redis.load.lock-lease-time:10}")
+    private long loadLockLeaseTime;
+
+    /**
+     * 本JVM内正在回源的key
+     */
+    private final ConcurrentMap<String, CompletableFuture<Object>> loadingFlights = new ConcurrentHashMap<>();
+
     /**
      * 删除缓存
      * @param key redis键
@@ -28,6 +112,7 @@ public class RedisUtil {
      */
     public Boolean del(String key){
         try {
+            invalidateLocal(key);
             return redisTemplate.delete(key);
         }catch (Exception ex) {
             log.error("删除redis缓存失败。key:{}",key,ex);
@@ -41,6 +126,7 @@ public class RedisUtil {
      * @return 执行结果 true成功，false失败
      */
     public Long del(Set<String> keys){
+        keys.forEach(this::invalidateLocal);
         return redisTemplate.delete(keys);
     }
 
@@ -55,6 +141,7 @@ public class RedisUtil {
     public Boolean set(String key,Object value,long time){
         try {
             redisTemplate.opsForValue().set(key,value,time, TimeUnit.SECONDS);
+            invalidateLocal(key);
             return true;
         }catch (Exception ex) {
             log.error("写入redis缓存失败。key:{},value:{}",key,value,ex);
@@ -72,6 +159,7 @@ public class RedisUtil {
     public Boolean set(String key,Object value){
         try {
             redisTemplate.opsForValue().set(key,value);
+            invalidateLocal(key);
             return true;
         }catch (Exception ex) {
             log.error("写入redis缓存失败。key:{},value:{}",key,value,ex);
@@ -86,13 +174,212 @@ public class RedisUtil {
      */
     public Object get(String key){
         try {
-            return key == null ? null : redisTemplate.opsForValue().get(key);
+            if (key == null) {
+                return null;
+            }
+            // 热点key优先读本地缓存
+            return hotKeyLocalCache == null ? redisTemplate.opsForValue().get(key)
+                    : hotKeyLocalCache.get(key, k -> redisTemplate.opsForValue().get(k));
+        }catch (Exception ex) {
+            log.error("获取redis缓存失败。key:{}",key,ex);
+        }
+        return null;
+    }
+
+    //==========================主库读取==============================
+    /**
+     * 从主库获取普通缓存（开启读写分离时，锁检查、写后立即读等不能容忍从库延迟的场景使用）
+     * @param key redis键
+     * @return 值
+     */
+    public Object getFromMaster(String key){
+        try {
+            return key == null ? null : masterRedisTemplate().opsForValue().get(key);
+        }catch (Exception ex) {
+            log.error("获取redis缓存失败。key:{}",key,ex);
+        }
+        return null;
+    }
+
+    /**
+     * 从主库获取key对应map的item键值（hash表）
+     * @param key redis键
+     * @param item map键
+     * @return key对应map的item键值
+     */
+    public Object hGetFromMaster(String key,Object item){
+        try {
+            return masterRedisTemplate().opsForHash().get(key,item);
         }catch (Exception ex) {
             log.error("获取redis缓存失败。key:{}",key,ex);
         }
         return null;
     }
 
+    /**
+     * 从主库判断key是否存在
+     * @param key redis键
+     * @return 执行结果 true存在，false不存在
+     */
+    public Boolean hasKeyFromMaster(String key){
+        try {
+            return masterRedisTemplate().hasKey(key);
+        }catch (Exception ex) {
+            log.error("判断redis缓存是否存在失败。key:{}",key,ex);
+        }
+        return false;
+    }
+
+    /**
+     * 从主库获取过期时间
+     * @param key redis键
+     * @return 剩余时间（单位秒），-1为永久有效，-2为不存在，失败返回null
+     */
+    public Long getExpireFromMaster(String key){
+        try {
+            return masterRedisTemplate().getExpire(key, TimeUnit.SECONDS);
+        }catch (Exception ex) {
+            log.error("获取redis过期时间失败。key:{}",key,ex);
+        }
+        return null;
+    }
+
+
+    //==========================防缓存击穿（单飞回源）==============================
+    /**
+     * 获取缓存，未命中或已逻辑过期时回源加载（防缓存击穿）
+     * 1、key的实际过期时间为time + 过期保留时间（common.redis.load.stale-time），剩余时间不足保留时间即为逻辑过期；
+     * 2、同一JVM内同一个key同时只有一个线程回源，其他线程等待其结果；
+     * 3、跨节点通过redisson短锁保证只有一个节点回源；逻辑过期时未拿到锁的调用方直接返回旧值，不等待。
+     * redis异常时降级为直接回源；loader的异常原样抛出；loader返回null时不缓存；没有IRedissonLock（redisson）时抛出IllegalStateException。
+     * @param key redis键
+     * @param time 过期时间（单位秒）
+     * @param loader 回源加载（如查询数据库）
+     * @return 缓存值或加载的值
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getOrLoad(String key, long time, Supplier<T> loader){
+        Object stale = null;
+        try {
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                byte[] rawKey = rawKey(key);
+                connection.get(rawKey);
+                connection.pTtl(rawKey);
+                return null;
+            });
+            Object value = results.get(0);
+            Long ttl = (Long) results.get(1);
+            // 未设置过期时间（-1）或剩余时间大于保留时间，为新鲜值
+            if (value != null && (ttl == null || ttl == -1 || ttl > TimeUnit.SECONDS.toMillis(staleTime))) {
+                return (T) value;
+            }
+            stale = value;
+        }catch (Exception ex) {
+            log.error("获取redis缓存失败。key:{}",key,ex);
+        }
+
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = loadingFlights.putIfAbsent(key, flight);
+        if (existing != null) {
+            // 本JVM已有线程在回源：有旧值直接返回旧值，否则等待其结果
+            return stale != null ? (T) stale : (T) joinFlight(existing);
+        }
+        try {
+            Object value = loadOnce(key, time, loader, stale);
+            flight.complete(value);
+            return (T) value;
+        } catch (RuntimeException | Error ex) {
+            flight.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            loadingFlights.remove(key, flight);
+        }
+    }
+
+    /**
+     * 跨节点回源：拿到锁的节点回源并写入缓存，其他节点有旧值返回旧值，没有旧值等待后重读
+     */
+    private <T> Object loadOnce(String key, long time, Supplier<T> loader, Object stale) {
+        // 锁key放在固定的loading:命名空间下，锁指标按key前缀聚合时不会随业务key产生无限多的维度
+        String lockKey = "loading:" + key;
+        IRedissonLock lock = redissonLock();
+        boolean locked = Boolean.TRUE.equals(lock.addTryLock(lockKey, stale == null ? loadLockWaitTime : 0, loadLockLeaseTime));
+        if (!locked) {
+            if (stale != null) {
+                return stale;
+            }
+            // 等锁超时（持锁节点回源较慢或redisson不可用），重读一次（主库），仍未命中则直接回源
+            Object value = getFromMaster(key);
+            return value != null ? value : loadAndSet(key, time, loader);
+        }
+        try {
+            // 双重检查（读主库，避免从库延迟导致重复回源）：等锁期间其他节点可能已回源
+            if (stale == null) {
+                Object value = getFromMaster(key);
+                if (value != null) {
+                    return value;
+                }
+            } else if (isFresh(key)) {
+                return getFromMaster(key);
+            }
+            return loadAndSet(key, time, loader);
+        } finally {
+            lock.removeLock(lockKey);
+        }
+    }
+
+    private <T> Object loadAndSet(String key, long time, Supplier<T> loader) {
+        T value = loader.get();
+        if (value != null) {
+            set(key, value, time + staleTime);
+        }
+        return value;
+    }
+
+    /**
+     * 只读写主库的redisTemplate（未开启读写分离时与redisTemplate相同）
+     */
+    @SuppressWarnings("unchecked")
+    private RedisTemplate<String,Object> masterRedisTemplate() {
+        if (!beanFactory.containsBean("masterRedisTemplate")) {
+            throw new IllegalStateException("主库读取需要masterRedisTemplate（由RedisConfig创建）");
+        }
+        return beanFactory.getBean("masterRedisTemplate", RedisTemplate.class);
+    }
+
+    private IRedissonLock redissonLock() {
+        IRedissonLock lock = redissonLock.getIfAvailable();
+        if (lock == null) {
+            throw new IllegalStateException("getOrLoad需要IRedissonLock（redisson分布式锁）");
+        }
+        return lock;
+    }
+
+    private boolean isFresh(String key) {
+        try {
+            Long ttl = masterRedisTemplate().getExpire(key, TimeUnit.MILLISECONDS);
+            return ttl != null && (ttl == -1 || ttl > TimeUnit.SECONDS.toMillis(staleTime));
+        }catch (Exception ex) {
+            log.error("获取redis过期时间失败。key:{}",key,ex);
+        }
+        return false;
+    }
+
+    private Object joinFlight(CompletableFuture<Object> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw ex;
+        }
+    }
+
 
     //==========================hash（MAP）==============================
     /**
@@ -104,8 +391,12 @@ public class RedisUtil {
      */
     public <T,V> Boolean hmSet(String key, Map<T,V> map, long time){
         try {
-            redisTemplate.opsForHash().putAll(key,map);
-            redisTemplate.expire(key, time, TimeUnit.SECONDS);
+            List<byte[]> args = new ArrayList<>(map.size() * 2);
+            for (Map.Entry<T,V> entry : map.entrySet()) {
+                args.add(rawHashKey(entry.getKey()));
+                args.add(rawHashValue(entry.getValue()));
+            }
+            writeWithExpire(key, "HSET", 2, time, args);
             return true;
         }catch (Exception ex) {
             log.error("写入redis缓存失败。key:{},value:{}",key,map,ex);
@@ -139,8 +430,7 @@ public class RedisUtil {
      */
     public Boolean hSet(String key,Object item,Object value,long time){
         try {
-            redisTemplate.opsForHash().put(key,item,value);
-            redisTemplate.expire(key, time, TimeUnit.SECONDS);
+            writeWithExpire(key, "HSET", 2, time, Arrays.asList(rawHashKey(item), rawHashValue(value)));
             return true;
         }catch (Exception ex) {
             log.error("写入redis缓存失败。key:{},item:{},value:{}",key,item,value,ex);
@@ -194,6 +484,18 @@ public class RedisUtil {
         return null;
     }
 
+    /**
+     * 分批遍历整个map（HSCAN，hash表），用于大key，避免HGETALL一次返回全部数据
+     * 返回的Stream持有redis连接，使用完必须关闭（try-with-resources）
+     * @param key redis键
+     * @param count 每次HSCAN建议返回的数量
+     * @return map的item-value（遍历期间map有变动时，同一个item可能返回多次）
+     */
+    public Stream<Map.Entry<Object,Object>> hScan(String key, long count){
+        HashOperations<String,Object,Object> operations = redisTemplate.opsForHash();
+        return cursorStream(operations.scan(key, ScanOptions.scanOptions().count(count).build()));
+    }
+
     /**
      *  删除key对应map中某些键值（hash表）
      * @param key redis键
@@ -272,8 +574,11 @@ public class RedisUtil {
      */
     public <T> Boolean llSet(String key, List<T> list, long time){
         try {
-            redisTemplate.opsForList().rightPushAll(key,list);
-            redisTemplate.expire(key, time, TimeUnit.SECONDS);
+            List<byte[]> args = new ArrayList<>(list.size());
+            for (T value : list) {
+                args.add(rawValue(value));
+            }
+            writeWithExpire(key, "RPUSH", 1, time, args);
             return true;
         }catch (Exception ex) {
             log.error("写入redis缓存失败。key:{},list:{}",key,list,ex);
@@ -306,8 +611,7 @@ public class RedisUtil {
      */
     public Boolean lSet(String key, Object value,Long time){
         try {
-            redisTemplate.boundListOps(key).rightPush(value);
-            redisTemplate.expire(key, time, TimeUnit.SECONDS);
+            writeWithExpire(key, "RPUSH", 1, time, Collections.singletonList(rawValue(value)));
             return true;
         }catch (Exception ex) {
             log.error("写入redis缓存失败。key:{},list:{}",key,value,ex);
@@ -347,6 +651,40 @@ public class RedisUtil {
         return null;
     }
 
+    /**
+     * 分批遍历整个链表（按count分段LRANGE，链表list），用于大key，避免一次返回全部数据
+     * 按索引分段读取，遍历期间链表头部有增删时会跳过或重复元素
+     * @param key redis键
+     * @param count 每段读取的数量（必须大于0）
+     * @return 链表元素（惰性读取，不持有连接）
+     */
+    public Stream<Object> lStream(String key, int count){
+        if (count <= 0) {
+            // 与SCAN的count一致，不大于0时直接报错（否则每段读取为空却不会结束遍历）
+            throw new IllegalArgumentException("lStream的count必须大于0：" + count);
+        }
+        Iterator<Object> iterator = new AbstractIterator<Object>() {
+            private long start = 0;
+            private Iterator<Object> chunk = Collections.emptyIterator();
+            private boolean last = false;
+
+            @Override
+            protected Object computeNext() {
+                while (!chunk.hasNext() && !last) {
+                    List<Object> values = redisTemplate.opsForList().range(key, start, start + count - 1);
+                    if (values == null) {
+                        values = Collections.emptyList();
+                    }
+                    last = values.size() < count;
+                    start += values.size();
+                    chunk = values.iterator();
+                }
+                return chunk.hasNext() ? chunk.next() : endOfData();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false);
+    }
+
     /**
      * 通过索引 获取list中的值（链表list）
      * @param key   键
@@ -436,8 +774,8 @@ public class RedisUtil {
      */
     public Boolean sSet(String key, Set<Object> set, long time){
         try {
-            redisTemplate.opsForSet().add(key,set);
-            redisTemplate.expire(key, time, TimeUnit.SECONDS);
+            // 与sSet(key,set)一致，set整体作为一个成员写入
+            writeWithExpire(key, "SADD", 1, time, Collections.singletonList(rawValue(set)));
             return true;
         }catch (Exception ex) {
             log.error("写入redis缓存失败。key:{},set:{}",key,set,ex);
@@ -470,8 +808,7 @@ public class RedisUtil {
      */
     public Boolean sSet(String key, Object value, long time){
         try {
-            redisTemplate.boundSetOps(key).add(value);
-            redisTemplate.expire(key, time, TimeUnit.SECONDS);
+            writeWithExpire(key, "SADD", 1, time, Collections.singletonList(rawValue(value)));
             return true;
         }catch (Exception ex) {
             log.error("写入redis缓存失败。key:{},value:{}",key,value,ex);
@@ -523,6 +860,17 @@ public class RedisUtil {
         return null;
     }
 
+    /**
+     * 分批遍历set（SSCAN，无序Set），用于大key，避免SMEMBERS一次返回全部数据
+     * 返回的Stream持有redis连接，使用完必须关闭（try-with-resources）
+     * @param key redis键
+     * @param count 每次SSCAN建议返回的数量
+     * @return set成员（遍历期间set有变动时，同一个成员可能返回多次）
+     */
+    public Stream<Object> sScan(String key, long count){
+        return cursorStream(redisTemplate.opsForSet().scan(key, ScanOptions.scanOptions().count(count).build()));
+    }
+
     /**
      * 移除set中值为value的（无序Set）
      * @param key    键
@@ -545,8 +893,7 @@ public class RedisUtil {
      */
     public Boolean zsSet(String key, Object value,long sort,long time){
         try {
-            redisTemplate.opsForZSet().add(key,value,sort);
-            redisTemplate.expire(key, time, TimeUnit.SECONDS);
+            writeWithExpire(key, "ZADD", 2, time, Arrays.asList(String.valueOf(sort).getBytes(StandardCharsets.UTF_8), rawValue(value)));
             return true;
         }catch (Exception ex) {
             log.error("写入redis缓存失败。key:{},value:{}",key,value,ex);
@@ -603,6 +950,17 @@ public class RedisUtil {
         return null;
     }
 
+    /**
+     * 分批遍历有序集合（ZSCAN，有序Set），用于大key，避免一次返回全部数据
+     * 返回的Stream持有redis连接，使用完必须关闭（try-with-resources）
+     * @param key redis键
+     * @param count 每次ZSCAN建议返回的数量
+     * @return 成员及分数（不保证按分数排序，遍历期间有变动时，同一个成员可能返回多次）
+     */
+    public Stream<ZSetOperations.TypedTuple<Object>> zsScan(String key, long count){
+        return cursorStream(redisTemplate.opsForZSet().scan(key, ScanOptions.scanOptions().count(count).build()));
+    }
+
     /**
      * 移除zset中值为value的（有序zSet）
      * @param key    键
@@ -612,4 +970,224 @@ public class RedisUtil {
         Long remove = redisTemplate.boundZSetOps(key).remove(set);
         return remove;
     }
+
+    //==========================批量（管道）==============================
+    /**
+     * 管道批量执行，回调中的所有命令一次网络往返发送
+     * @param consumer 在管道中执行的操作（回调内的命令返回值均为null，结果通过本方法返回）
+     * @return 各命令结果，按执行顺序通过序号读取（已按redisTemplate的序列化方式反序列化）
+     */
+    public PipelineResult pipeline(Consumer<RedisOperations<String,Object>> consumer){
+        return new PipelineResult(redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                consumer.accept((RedisOperations<String, Object>) operations);
+                return null;
+            }
+        }));
+    }
+
+    /**
+     * 批量入普通缓存（MSET，一条命令）
+     * @param map key-value
+     * @return 执行结果 true成功，false失败
+     */
+    public Boolean mSet(Map<String,Object> map){
+        try {
+            redisTemplate.opsForValue().multiSet(map);
+            map.keySet().forEach(this::invalidateLocal);
+            return true;
+        }catch (Exception ex) {
+            log.error("批量写入redis缓存失败。keys:{}",map.keySet(),ex);
+        }
+        return false;
+    }
+
+    /**
+     * 批量入普通缓存（管道SET EX，一次网络往返）
+     * @param map key-value
+     * @param time 过期时间（单位秒）
+     * @return 执行结果 true成功，false失败
+     */
+    public Boolean mSet(Map<String,Object> map, long time){
+        try {
+            pipeline(operations -> map.forEach((key, value) -> operations.opsForValue().set(key, value, time, TimeUnit.SECONDS)));
+            map.keySet().forEach(this::invalidateLocal);
+            return true;
+        }catch (Exception ex) {
+            log.error("批量写入redis缓存失败。keys:{}",map.keySet(),ex);
+        }
+        return false;
+    }
+
+    /**
+     * 批量获取普通缓存（MGET，一条命令）
+     * @param keys redis键
+     * @return 与keys顺序一致的值，不存在的key为null
+     */
+    public List<Object> mGet(Collection<String> keys){
+        try {
+            return redisTemplate.opsForValue().multiGet(keys);
+        }catch (Exception ex) {
+            log.error("批量获取redis缓存失败。keys:{}",keys,ex);
+        }
+        return null;
+    }
+
+    /**
+     * 批量设置过期时间（管道，一次网络往返）
+     * @param keys redis键
+     * @param time 过期时间（单位秒）
+     * @return 执行结果 true成功，false失败
+     */
+    public Boolean mExpire(Collection<String> keys, long time){
+        try {
+            pipeline(operations -> keys.forEach(key -> operations.expire(key, time, TimeUnit.SECONDS)));
+            return true;
+        }catch (Exception ex) {
+            log.error("批量设置redis过期时间失败。keys:{}",keys,ex);
+        }
+        return false;
+    }
+
+    //==========================key扫描（SCAN）==============================
+    /**
+     * 按模式扫描key（SCAN游标分批迭代，不阻塞redis，替代KEYS）
+     * 集群模式下依次扫描所有主节点。返回的Stream持有redis连接，使用完必须关闭（try-with-resources）
+     * @param pattern 匹配模式，如user:*
+     * @param count 每次SCAN建议返回的数量
+     * @return 匹配的key（扫描期间有key变动时，同一个key可能返回多次）
+     */
+    @SuppressWarnings("unchecked")
+    public Stream<String> scan(String pattern, long count){
+        RedisConnectionFactory factory = redisTemplate.getConnectionFactory();
+        if (factory instanceof LettuceConnectionFactory && ((LettuceConnectionFactory) factory).isClusterAware()) {
+            // spring的集群连接不支持跨节点SCAN，使用lettuce原生集群SCAN逐个扫描主节点
+            RedisClusterConnection connection = factory.getClusterConnection();
+            try {
+                RedisAdvancedClusterAsyncCommands<byte[], byte[]> commands = (RedisAdvancedClusterAsyncCommands<byte[], byte[]>) connection.getNativeConnection();
+                return ScanIterator.scan(commands.getStatefulConnection().sync(), ScanArgs.Builder.matches(pattern).limit(count))
+                        .stream()
+                        .map(this::deserializeKey)
+                        .onClose(connection::close);
+            } catch (RuntimeException ex) {
+                connection.close();
+                throw ex;
+            }
+        }
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(count).build();
+        Cursor<byte[]> cursor = redisTemplate.executeWithStickyConnection(
+                (RedisCallback<Cursor<byte[]>>) connection -> connection.scan(options));
+        return cursorStream(cursor).map(this::deserializeKey);
+    }
+
+    /**
+     * 按模式删除key（SCAN + 分批UNLINK，不阻塞redis）
+     * @param pattern 匹配模式，如user:*
+     * @return 删除的key数量，失败返回null
+     */
+    public Long deleteByPattern(String pattern){
+        return deleteByPattern(pattern, 1000);
+    }
+
+    /**
+     * 按模式删除key（SCAN + 分批UNLINK，不阻塞redis）
+     * @param pattern 匹配模式，如user:*
+     * @param batchSize 每批UNLINK的key数量（同时作为SCAN的count）
+     * @return 删除的key数量，失败返回null
+     */
+    public Long deleteByPattern(String pattern, int batchSize){
+        long deleted = 0;
+        try (Stream<String> keys = scan(pattern, batchSize)) {
+            List<String> batch = new ArrayList<>(batchSize);
+            Iterator<String> iterator = keys.iterator();
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() >= batchSize) {
+                    deleted += unlink(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                deleted += unlink(batch);
+            }
+            return deleted;
+        }catch (Exception ex) {
+            log.error("按模式删除redis缓存失败。pattern:{},deleted:{}",pattern,deleted,ex);
+        }
+        return null;
+    }
+
+    private long unlink(List<String> keys) {
+        keys.forEach(this::invalidateLocal);
+        Long count = redisTemplate.unlink(keys);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * 游标转Stream，关闭Stream时关闭游标（释放连接）
+     */
+    private <T> Stream<T> cursorStream(Cursor<T> cursor) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.NONNULL), false)
+                .onClose(() -> closeQuietly(cursor));
+    }
+
+    private void invalidateLocal(String key) {
+        if (hotKeyLocalCache != null) {
+            hotKeyLocalCache.invalidate(key);
+        }
+    }
+
+    private String deserializeKey(byte[] rawKey) {
+        return (String) redisTemplate.getKeySerializer().deserialize(rawKey);
+    }
+
+    private void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ex) {
+            log.error("关闭redis游标失败。", ex);
+        }
+    }
+
+    /**
+     * 通过lua脚本执行写入命令并设置过期时间，保证原子性且只有一次网络往返
+     * @param command 写入命令（HSET/RPUSH/SADD/ZADD）
+     * @param argsPerCall 每次调用命令的参数个数
+     * @param time 过期时间（单位秒）
+     * @param args 命令参数（已序列化）
+     */
+    private void writeWithExpire(String key, String command, int argsPerCall, long time, List<byte[]> args) {
+        byte[][] keysAndArgs = new byte[args.size() + 4][];
+        keysAndArgs[0] = rawKey(key);
+        keysAndArgs[1] = command.getBytes(StandardCharsets.UTF_8);
+        keysAndArgs[2] = String.valueOf(time).getBytes(StandardCharsets.UTF_8);
+        keysAndArgs[3] = String.valueOf(argsPerCall).getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < args.size(); i++) {
+            keysAndArgs[i + 4] = args.get(i);
+        }
+        redisTemplate.execute((RedisCallback<Object>) connection ->
+                connection.eval(WRITE_EXPIRE_SCRIPT, ReturnType.INTEGER, 1, keysAndArgs));
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] rawKey(String key) {
+        return ((RedisSerializer<String>) redisTemplate.getKeySerializer()).serialize(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] rawValue(Object value) {
+        return ((RedisSerializer<Object>) redisTemplate.getValueSerializer()).serialize(value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] rawHashKey(Object item) {
+        return ((RedisSerializer<Object>) redisTemplate.getHashKeySerializer()).serialize(item);
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] rawHashValue(Object value) {
+        return ((RedisSerializer<Object>) redisTemplate.getHashValueSerializer()).serialize(value);
+    }
 }
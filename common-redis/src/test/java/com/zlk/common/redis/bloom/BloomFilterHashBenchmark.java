@@ -0,0 +1,97 @@
+package com.zlk.common.redis.bloom;
+
+import com.google.common.hash.Funnel;
+import com.google.common.hash.Funnels;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * @author likuan.zhou
+ * @title: BloomFilterHashBenchmark
+ * @projectName common
+ * @description: 布隆过滤器hash计算的吞吐量与内存分配对比
+ * funnel*：原实现，guava hashObject(Funnel) + 每次新建int[]；murmur*：Murmur3 + 线程本地offset缓冲区。
+ * 默认配置（100万/1%）下比较String（原Funnel写入两次）与Long两种key，不访问redis。
+ * 运行main方法，GCProfiler输出的gc.alloc.rate.norm即每次调用分配的字节数。
+ * @date 2021/10/18/016 19:05
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BloomFilterHashBenchmark {
+
+    private static final Funnel<String> DOUBLE_STRING_FUNNEL =
+            (from, into) -> into.putString(from, StandardCharsets.UTF_8).putString(from, StandardCharsets.UTF_8);
+
+    private BloomFilterHelper<String> funnelStringHelper;
+
+    private BloomFilterHelper<String> murmurStringHelper;
+
+    private BloomFilterHelper<Long> funnelLongHelper;
+
+    private BloomFilterHelper<Long> murmurLongHelper;
+
+    private String stringKey;
+
+    private Long longKey;
+
+    @Setup
+    public void setUp() {
+        funnelStringHelper = new BloomFilterHelper<>(DOUBLE_STRING_FUNNEL, 1000000, 0.01);
+        murmurStringHelper = new BloomFilterHelper<>((ToLongFunction<String>) value -> Murmur3.hash64(value, 2), 1000000, 0.01);
+        funnelLongHelper = new BloomFilterHelper<>(Funnels.longFunnel(), 1000000, 0.01);
+        murmurLongHelper = BloomFilterHelper.ofLong(1000000, 0.01);
+        stringKey = "user:token:7a1f0c3e-9b2d-4e5f-8a6b-1c2d3e4f5a6b";
+        longKey = 1234567890123L;
+    }
+
+    //==========================String==============================
+
+    @Benchmark
+    public int[] funnelString() {
+        return funnelStringHelper.murmurHashOffset(stringKey);
+    }
+
+    @Benchmark
+    public int[] murmurString() {
+        return murmurStringHelper.murmurHashOffsetBuffer(stringKey);
+    }
+
+    //==========================Long==============================
+
+    @Benchmark
+    public int[] funnelLong() {
+        return funnelLongHelper.murmurHashOffset(longKey);
+    }
+
+    @Benchmark
+    public int[] murmurLong() {
+        return murmurLongHelper.murmurHashOffsetBuffer(longKey);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BloomFilterHashBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
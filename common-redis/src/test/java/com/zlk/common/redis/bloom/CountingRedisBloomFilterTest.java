@@ -0,0 +1,125 @@
+package com.zlk.common.redis.bloom;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author likuan.zhou
+ * @title: CountingRedisBloomFilterTest
+ * @projectName common
+ * @description: 计数布隆过滤器的脚本参数（计数器序号）计算，不访问redis
+ * lua脚本按ARGV[1 + v * k + j]（j = 1..k）读取第v个值的计数器序号，参数布局需与之一致
+ * @date 2021/10/18/016 19:05
+ */
+public class CountingRedisBloomFilterTest {
+
+    private static final String KEY = "bloom:counting";
+
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Before
+    public void setUp() {
+        redisTemplate = new RedisTemplate<>();
+        redisTemplate.setKeySerializer(new StringRedisSerializer());
+    }
+
+    @Test
+    public void argsLayoutMatchesScript() {
+        BloomFilterHelper<CharSequence> helper = BloomFilterHelper.ofString(1000, 0.01);
+        CountingRedisBloomFilter<CharSequence> filter = new CountingRedisBloomFilter<>(redisTemplate, helper, KEY);
+        List<CharSequence> values = values(10);
+
+        List<CountingRedisBloomFilter.ShardBatch> batches = filter.batch(values);
+
+        assertEquals(1, batches.size());
+        CountingRedisBloomFilter.ShardBatch batch = batches.get(0);
+        int k = helper.getNumHashFunctions();
+        assertEquals(KEY, string(batch.args.get(0)));
+        assertEquals(String.valueOf(k), string(batch.args.get(1)));
+        // ARGV为args[1..]，脚本循环(#ARGV - 1) / k次
+        assertEquals(values.size(), (batch.args.size() - 2) / k);
+        assertEquals(0, (batch.args.size() - 2) % k);
+        for (int v = 0; v < values.size(); v++) {
+            assertEquals(v, (int) batch.positions.get(v));
+            assertArrayEquals(helper.murmurHashOffset(values.get(v)), counters(batch, v, k));
+        }
+    }
+
+    @Test
+    public void countersWithinBitSize() {
+        BloomFilterHelper<CharSequence> helper = BloomFilterHelper.ofString(1000, 0.01);
+        CountingRedisBloomFilter<CharSequence> filter = new CountingRedisBloomFilter<>(redisTemplate, helper, KEY);
+
+        CountingRedisBloomFilter.ShardBatch batch = filter.batch(values(1000)).get(0);
+
+        for (int i = 2; i < batch.args.size(); i++) {
+            int counter = Integer.parseInt(string(batch.args.get(i)));
+            assertTrue("counter=" + counter, counter >= 0 && counter < helper.getBitSize());
+        }
+    }
+
+    @Test
+    public void shardedBatchesKeepValueOrder() {
+        BloomFilterHelper<CharSequence> helper = new BloomFilterHelper<>((ToLongFunction<CharSequence>) Murmur3::hash64, 10000, 0.01, 4);
+        CountingRedisBloomFilter<CharSequence> filter = new CountingRedisBloomFilter<>(redisTemplate, helper, KEY);
+        List<CharSequence> values = values(200);
+        int k = helper.getNumHashFunctions();
+
+        List<CountingRedisBloomFilter.ShardBatch> batches = filter.batch(values);
+
+        assertEquals(4, batches.size());
+        boolean[] seen = new boolean[values.size()];
+        int lastShard = -1;
+        for (CountingRedisBloomFilter.ShardBatch batch : batches) {
+            int shard = helper.shardIndex(helper.hash64(values.get(batch.positions.get(0))));
+            assertTrue(shard > lastShard);
+            lastShard = shard;
+            assertEquals(helper.shardKey(KEY, shard), string(batch.args.get(0)));
+            assertEquals(batch.positions.size(), (batch.args.size() - 2) / k);
+            for (int v = 0; v < batch.positions.size(); v++) {
+                int position = batch.positions.get(v);
+                CharSequence value = values.get(position);
+                assertEquals(shard, helper.shardIndex(helper.hash64(value)));
+                assertArrayEquals(helper.murmurHashOffset(value), counters(batch, v, k));
+                seen[position] = true;
+            }
+        }
+        for (int i = 0; i < seen.length; i++) {
+            assertTrue("position=" + i, seen[i]);
+        }
+    }
+
+    /**
+     * 第v个值的k个计数器序号（ARGV[1 + v * k + 1] ~ ARGV[1 + v * k + k]）
+     */
+    private static int[] counters(CountingRedisBloomFilter.ShardBatch batch, int v, int k) {
+        int[] counters = new int[k];
+        for (int j = 1; j <= k; j++) {
+            counters[j - 1] = Integer.parseInt(string(batch.args.get(1 + v * k + j)));
+        }
+        return counters;
+    }
+
+    private static List<CharSequence> values(int size) {
+        List<CharSequence> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add("value:" + i);
+        }
+        return values;
+    }
+
+    private static String string(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,115 @@
+package com.zlk.common.redis.bloom;
+
+import com.google.common.hash.Funnel;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hashing;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.function.ToLongFunction;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author likuan.zhou
+ * @title: Murmur3Test
+ * @projectName common
+ * @description: Murmur3与guava murmur3_128().asLong()的一致性（不一致会导致已写入redis的位数组失效）
+ * @date 2021/10/18/016 19:05
+ */
+public class Murmur3Test {
+
+    private static final Funnel<CharSequence> DOUBLE_STRING_FUNNEL =
+            (from, into) -> into.putString(from, StandardCharsets.UTF_8).putString(from, StandardCharsets.UTF_8);
+
+    private final Random random = new Random(20211018L);
+
+    @Test
+    public void hashLongMatchesGuava() {
+        long[] edges = {0L, 1L, -1L, Long.MIN_VALUE, Long.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE};
+        for (long value : edges) {
+            assertEquals("value=" + value, Hashing.murmur3_128().hashLong(value).asLong(), Murmur3.hash64(value));
+        }
+        for (int i = 0; i < 10000; i++) {
+            long value = random.nextLong();
+            assertEquals("value=" + value, Hashing.murmur3_128().hashLong(value).asLong(), Murmur3.hash64(value));
+        }
+    }
+
+    @Test
+    public void hashStringMatchesGuava() {
+        // 覆盖0~40长度（跨越16字节分块与尾部的各种情况）以及1~4字节UTF-8字符
+        for (int length = 0; length <= 40; length++) {
+            for (int n = 0; n < 50; n++) {
+                String value = randomString(length);
+                assertEquals("value=" + value, Hashing.murmur3_128().hashString(value, StandardCharsets.UTF_8).asLong(),
+                        Murmur3.hash64(value));
+            }
+        }
+    }
+
+    @Test
+    public void hashStringMatchesGuavaForUnpairedSurrogate() {
+        for (String value : new String[]{"\uD800", "a\uDC00b", "😀\uD800", "\uDBFF"}) {
+            assertEquals(Hashing.murmur3_128().hashString(value, StandardCharsets.UTF_8).asLong(), Murmur3.hash64(value));
+        }
+    }
+
+    @Test
+    public void hashRepeatMatchesDoubleStringFunnel() {
+        for (int length = 0; length <= 40; length++) {
+            String value = randomString(length);
+            assertEquals("value=" + value, Hashing.murmur3_128().hashObject(value, DOUBLE_STRING_FUNNEL).asLong(),
+                    Murmur3.hash64(value, 2));
+        }
+    }
+
+    @Test
+    public void offsetsMatchFunnelHelper() {
+        BloomFilterHelper<CharSequence> funnelHelper =
+                new BloomFilterHelper<>(Funnels.stringFunnel(StandardCharsets.UTF_8), 1000000, 0.01);
+        BloomFilterHelper<CharSequence> stringHelper = BloomFilterHelper.ofString(1000000, 0.01);
+        BloomFilterHelper<Long> longFunnelHelper = new BloomFilterHelper<>(Funnels.longFunnel(), 1000000, 0.01);
+        BloomFilterHelper<Long> longHelper = BloomFilterHelper.ofLong(1000000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            String value = randomString(random.nextInt(30));
+            assertArrayEquals(funnelHelper.murmurHashOffset(value), stringHelper.murmurHashOffsetBuffer(value));
+            // 装箱传入，避免匹配到murmurHashOffsetBuffer(long hash64)重载
+            Long number = random.nextLong();
+            assertArrayEquals(longFunnelHelper.murmurHashOffset(number), longHelper.murmurHashOffsetBuffer(number));
+        }
+    }
+
+    @Test
+    public void defaultConfigMatchesOriginalFunnel() {
+        BloomFilterHelper<String> funnelHelper = new BloomFilterHelper<>(DOUBLE_STRING_FUNNEL::funnel, 1000000, 0.01);
+        BloomFilterHelper<String> murmurHelper =
+                new BloomFilterHelper<>((ToLongFunction<String>) value -> Murmur3.hash64(value, 2), 1000000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            String value = randomString(random.nextInt(30));
+            assertArrayEquals(funnelHelper.murmurHashOffset(value), murmurHelper.murmurHashOffset(value));
+        }
+    }
+
+    private String randomString(int length) {
+        StringBuilder builder = new StringBuilder(length);
+        while (builder.length() < length) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    builder.append((char) ('a' + random.nextInt(26)));
+                    break;
+                case 1:
+                    builder.append((char) (0x80 + random.nextInt(0x780)));
+                    break;
+                case 2:
+                    builder.append((char) (0x4E00 + random.nextInt(0x5000)));
+                    break;
+                default:
+                    builder.appendCodePoint(0x10000 + random.nextInt(0x1000));
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,104 @@
+package com.zlk.common.redis.bloom;
+
+import com.zlk.common.redis.config.BloomFilterConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author likuan.zhou
+ * @title: RedisBloomFilterPipelineBenchmark
+ * @projectName common
+ * @description: 布隆过滤器逐位SETBIT/GETBIT与pipeline模式的耗时对比（默认配置100万/1%，每个值7个hash位）
+ * 需要可访问的redis，地址通过-Dredis.host/-Dredis.port指定（默认127.0.0.1:6379），会写入bloom:benchmark key。
+ * 运行：直接执行main方法，或mvn test-compile后用jmh运行。
+ * @date 2021/10/18/016 19:05
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedisBloomFilterPipelineBenchmark {
+
+    private static final String KEY = "bloom:benchmark";
+
+    private LettuceConnectionFactory connectionFactory;
+
+    private RedisTemplate<String, Object> redisTemplate;
+
+    private RedisBloomFilter<String> redisBloomFilter;
+
+    private BloomFilterHelper<String> bloomFilterHelper;
+
+    @Setup
+    public void setUp() {
+        connectionFactory = new LettuceConnectionFactory(System.getProperty("redis.host", "127.0.0.1"),
+                Integer.getInteger("redis.port", 6379));
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.afterPropertiesSet();
+        redisBloomFilter = new RedisBloomFilter<>();
+        ReflectionTestUtils.setField(redisBloomFilter, "redisTemplate", redisTemplate);
+        bloomFilterHelper = new BloomFilterConfig().initBloomFilterHelper();
+    }
+
+    @TearDown
+    public void tearDown() {
+        redisTemplate.delete(KEY);
+        connectionFactory.destroy();
+    }
+
+    //==========================添加==============================
+
+    @Benchmark
+    public void addPerBit() {
+        redisBloomFilter.addByBloomFilter(bloomFilterHelper, KEY, value());
+    }
+
+    @Benchmark
+    public void addPipeline() {
+        redisBloomFilter.addByBloomFilterPipeline(bloomFilterHelper, KEY, value());
+    }
+
+    //==========================判断==============================
+
+    @Benchmark
+    public boolean includePerBit() {
+        return redisBloomFilter.includeByBloomFilter(bloomFilterHelper, KEY, value());
+    }
+
+    @Benchmark
+    public boolean includePipeline() {
+        return redisBloomFilter.includeByBloomFilterPipeline(bloomFilterHelper, KEY, value());
+    }
+
+    private static String value() {
+        return String.valueOf(ThreadLocalRandom.current().nextInt(1000000));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RedisBloomFilterPipelineBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,83 @@
+package com.zlk.common.redis.config;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author likuan.zhou
+ * @title: InterceptingRedisTemplateTest
+ * @projectName common
+ * @description: 连接代理只对redis命令应用拦截器，拦截器按顺序调用
+ * @date 2021/10/18/016 19:05
+ */
+public class InterceptingRedisTemplateTest {
+
+    private final List<String> calls = new ArrayList<>();
+
+    private InterceptingRedisTemplate<String, Object> template;
+
+    private RedisConnection connection;
+
+    @Before
+    public void setUp() {
+        RedisCommandInterceptor first = invocation -> {
+            calls.add("first:" + invocation.getMethod().getName());
+            return invocation.proceed();
+        };
+        RedisCommandInterceptor second = invocation -> {
+            calls.add("second:" + invocation.getMethod().getName());
+            return invocation.proceed();
+        };
+        template = new InterceptingRedisTemplate<>(Arrays.asList(first, second));
+        connection = (RedisConnection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{RedisConnection.class},
+                (proxy, method, args) -> {
+                    calls.add("target:" + method.getName());
+                    if ("isPipelined".equals(method.getName())) {
+                        return false;
+                    }
+                    return "get".equals(method.getName()) ? args[0] : null;
+                });
+    }
+
+    @Test
+    public void commandIntercepted() {
+        RedisConnection proxy = template.preProcessConnection(connection, false);
+
+        byte[] value = proxy.get("k".getBytes());
+
+        assertArrayEquals("k".getBytes(), value);
+        assertEquals(Arrays.asList("first:get", "second:get", "target:get"), calls);
+    }
+
+    @Test
+    public void nonCommandNotIntercepted() {
+        RedisConnection proxy = template.preProcessConnection(connection, false);
+
+        proxy.isPipelined();
+        proxy.stringCommands();
+        proxy.close();
+
+        assertEquals(Arrays.asList("target:isPipelined", "target:stringCommands", "target:close"), calls);
+    }
+
+    @Test
+    public void isCommand() throws NoSuchMethodException {
+        assertTrue(template.isCommand(RedisConnection.class.getMethod("get", byte[].class)));
+        assertTrue(template.isCommand(RedisConnection.class.getMethod("del", byte[][].class)));
+        assertFalse(template.isCommand(RedisConnection.class.getMethod("close")));
+        assertFalse(template.isCommand(RedisConnection.class.getMethod("openPipeline")));
+        assertFalse(template.isCommand(RedisConnection.class.getMethod("stringCommands")));
+        assertFalse(template.isCommand(Object.class.getMethod("toString")));
+    }
+}
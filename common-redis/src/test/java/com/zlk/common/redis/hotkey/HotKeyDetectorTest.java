@@ -0,0 +1,118 @@
+package com.zlk.common.redis.hotkey;
+
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author likuan.zhou
+ * @title: HotKeyDetectorTest
+ * @projectName common
+ * @description: Space-Saving top-K计数、窗口换算与热点阈值（采样率为1，不启动定时任务，手动结束窗口）
+ * @date 2021/10/18/016 19:05
+ */
+public class HotKeyDetectorTest {
+
+    private HotKeyDetector detector;
+
+    @Before
+    public void setUp() {
+        detector = new HotKeyDetector();
+        ReflectionTestUtils.setField(detector, "sampleRate", 1.0);
+        ReflectionTestUtils.setField(detector, "capacity", 10);
+        ReflectionTestUtils.setField(detector, "top", 3);
+        ReflectionTestUtils.setField(detector, "window", 10L);
+        ReflectionTestUtils.setField(detector, "threshold", 50.0);
+        ReflectionTestUtils.setField(detector, "rateGauge",
+                MultiGauge.builder("common.redis.hotkey.rate").register(new SimpleMeterRegistry()));
+    }
+
+    @Test
+    public void exactCountsWithinCapacity() {
+        offer("a", 300);
+        offer("b", 200);
+        offer("c", 100);
+        offer("d", 10);
+
+        detector.rotate();
+
+        // 计数 / (采样率 * 窗口秒数)，只保留top个，按频率从大到小
+        Map<String, Double> topKeys = detector.getTopKeys();
+        assertEquals(Arrays.asList("a", "b", "c"), new ArrayList<>(topKeys.keySet()));
+        assertEquals(30.0, topKeys.get("a"), 0.0001);
+        assertEquals(20.0, topKeys.get("b"), 0.0001);
+        assertEquals(10.0, topKeys.get("c"), 0.0001);
+    }
+
+    @Test
+    public void heavyHittersSurviveEviction() {
+        // 计数器容量10，大量只出现一次的key不断替换计数最小的计数器
+        for (int i = 0; i < 1000; i++) {
+            detector.offer("hot:1");
+            detector.offer("hot:2");
+            detector.offer("cold:" + i);
+        }
+
+        detector.rotate();
+
+        Map<String, Double> topKeys = detector.getTopKeys();
+        assertEquals(new HashSet<>(Arrays.asList("hot:1", "hot:2")), new HashSet<>(new ArrayList<>(topKeys.keySet()).subList(0, 2)));
+        // 保守估计（计数 - 误差）不超过真实频率
+        assertTrue(topKeys.get("hot:1") <= 100.0);
+        assertTrue(topKeys.get("hot:1") > 90.0);
+    }
+
+    @Test
+    public void evictedKeyInheritsMinimumAsError() {
+        ReflectionTestUtils.setField(detector, "capacity", 2);
+        offer("a", 100);
+        offer("b", 10);
+        // 替换b：计数10 + 1，误差10，保守估计为1
+        detector.offer("c");
+
+        detector.rotate();
+
+        Map<String, Double> topKeys = detector.getTopKeys();
+        assertEquals(Arrays.asList("a", "c"), new ArrayList<>(topKeys.keySet()));
+        assertEquals(0.1, topKeys.get("c"), 0.0001);
+    }
+
+    @Test
+    public void hotKeysAboveThreshold() {
+        offer("hot", 600);
+        offer("warm", 499);
+
+        detector.rotate();
+
+        assertTrue(detector.isHot("hot"));
+        assertFalse(detector.isHot("warm"));
+    }
+
+    @Test
+    public void rotateStartsNewWindow() {
+        offer("hot", 600);
+        detector.rotate();
+
+        detector.rotate();
+
+        assertTrue(detector.getTopKeys().isEmpty());
+        assertFalse(detector.isHot("hot"));
+    }
+
+    private void offer(String key, int times) {
+        for (int i = 0; i < times; i++) {
+            detector.record(key);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.zlk.common.redis.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author likuan.zhou
+ * @title: RedisMetricsAspectTest
+ * @projectName common
+ * @description: 锁指标的锁类型和key前缀（指标维度）
+ * @date 2021/10/18/016 19:05
+ */
+public class RedisMetricsAspectTest {
+
+    @Test
+    public void lockType() {
+        assertEquals("Lock", RedisMetricsAspect.lockType("addTryLock", "add"));
+        assertEquals("Lock", RedisMetricsAspect.lockType("removeLock", "remove"));
+        assertEquals("FairLock", RedisMetricsAspect.lockType("addFairTryLock", "add"));
+        assertEquals("FairLock", RedisMetricsAspect.lockType("removeFairLock", "remove"));
+    }
+
+    @Test
+    public void prefixFirstSegments() {
+        assertEquals("order", RedisMetricsAspect.prefix("order:lock:1001", 1));
+        assertEquals("order:lock", RedisMetricsAspect.prefix("order:lock:1001", 2));
+    }
+
+    @Test
+    public void prefixExcludesLastSegment() {
+        // 多段的key不会把中间的id带入指标维度
+        assertEquals("order", RedisMetricsAspect.prefix("order:1001:sku:5", 1));
+        // 段数不足时不含最后一段（id）
+        assertEquals("order", RedisMetricsAspect.prefix("order:1001", 3));
+    }
+
+    @Test
+    public void prefixWithoutSeparator() {
+        assertEquals("other", RedisMetricsAspect.prefix("1001", 1));
+        assertEquals("other", RedisMetricsAspect.prefix(":1001", 1));
+    }
+}
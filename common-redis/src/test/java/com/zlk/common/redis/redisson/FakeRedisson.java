@@ -0,0 +1,169 @@
+package com.zlk.common.redis.redisson;
+
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @author likuan.zhou
+ * @title: FakeRedisson
+ * @projectName common
+ * @description: 内存中模拟redisson可重入锁的RedissonClient（只支持getLock），记录访问"redis"的上锁次数
+ * 锁按持有线程计重入次数，租期到期后自动释放；等待中的线程在每次解锁后全部重试（相当于每个等待者各自订阅/轮询redis），
+ * 每次上锁尝试前等待rtt模拟网络往返。
+ * @date 2021/10/18/016 19:05
+ */
+class FakeRedisson {
+
+    /**
+     * 上锁尝试次数（每次相当于一次redis上锁脚本调用）
+     */
+    final AtomicLong attempts = new AtomicLong();
+
+    private final Map<String, FakeLock> locks = new ConcurrentHashMap<>();
+
+    /**
+     * 每次上锁尝试的网络往返耗时（纳秒）
+     */
+    private final long rttNanos;
+
+    FakeRedisson() {
+        this(0);
+    }
+
+    FakeRedisson(long rttNanos) {
+        this.rttNanos = rttNanos;
+    }
+
+    RedissonClient client() {
+        return (RedissonClient) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{RedissonClient.class},
+                (proxy, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class) {
+                        return objectMethod(proxy, method, args, "FakeRedisson");
+                    }
+                    if ("getLock".equals(method.getName())) {
+                        return lock((String) args[0]);
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    RLock lock(String key) {
+        FakeLock lock = locks.computeIfAbsent(key, k -> new FakeLock());
+        return (RLock) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{RLock.class},
+                (proxy, method, args) -> method.getDeclaringClass() == Object.class
+                        ? objectMethod(proxy, method, args, "FakeLock:" + key) : lock.invoke(method, args));
+    }
+
+    /**
+     * 代理上的toString/equals/hashCode（ReflectionTestUtils.setField等会调用toString）
+     */
+    private static Object objectMethod(Object proxy, Method method, Object[] args, String name) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return name;
+            default:
+                throw new UnsupportedOperationException(method.getName());
+        }
+    }
+
+    private class FakeLock {
+
+        private Thread owner;
+        private int holds;
+        /**
+         * 租期到期时间（System.nanoTime），看门狗续期时为Long.MAX_VALUE
+         */
+        private long expireAt;
+
+        Object invoke(Method method, Object[] args) throws InterruptedException {
+            switch (method.getName()) {
+                case "lock":
+                    tryLock(Long.MAX_VALUE, args == null ? -1 : ((TimeUnit) args[1]).toNanos((Long) args[0]));
+                    return null;
+                case "tryLock":
+                    TimeUnit unit = (TimeUnit) args[2];
+                    return tryLock(unit.toNanos((Long) args[0]), unit.toNanos((Long) args[1]));
+                case "unlock":
+                    unlock();
+                    return null;
+                case "isHeldByCurrentThread":
+                    return isHeld();
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }
+
+        private boolean tryLock(long waitNanos, long leaseNanos) throws InterruptedException {
+            boolean waitForever = waitNanos == Long.MAX_VALUE;
+            long deadline = System.nanoTime() + (waitForever ? 0 : waitNanos);
+            while (true) {
+                if (rttNanos > 0) {
+                    LockSupport.parkNanos(rttNanos);
+                }
+                if (attempt(waitForever, deadline, leaseNanos)) {
+                    return true;
+                }
+                if (!waitForever && deadline - System.nanoTime() <= 0) {
+                    return false;
+                }
+            }
+        }
+
+        /**
+         * 一次上锁尝试，失败时等待解锁或超时
+         */
+        private synchronized boolean attempt(boolean waitForever, long deadline, long leaseNanos) throws InterruptedException {
+            attempts.incrementAndGet();
+            long now = System.nanoTime();
+            if (owner != null && expired(now)) {
+                owner = null;
+                holds = 0;
+            }
+            if (owner == null || owner == Thread.currentThread()) {
+                owner = Thread.currentThread();
+                holds++;
+                expireAt = leaseNanos > 0 ? now + leaseNanos : Long.MAX_VALUE;
+                return true;
+            }
+            long remaining = waitForever ? Long.MAX_VALUE : deadline - now;
+            if (remaining <= 0) {
+                return false;
+            }
+            if (expireAt != Long.MAX_VALUE) {
+                remaining = Math.min(remaining, Math.max(expireAt - now, 1));
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            return false;
+        }
+
+        private synchronized void unlock() {
+            if (!isHeld()) {
+                throw new IllegalMonitorStateException("not locked by current thread");
+            }
+            if (--holds == 0) {
+                owner = null;
+                notifyAll();
+            }
+        }
+
+        private synchronized boolean isHeld() {
+            return owner == Thread.currentThread() && !expired(System.nanoTime());
+        }
+
+        private boolean expired(long now) {
+            return expireAt != Long.MAX_VALUE && now - expireAt >= 0;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.zlk.common.redis.redisson;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author likuan.zhou
+ * @title: RedissonLockImplTest
+ * @projectName common
+ * @description: 锁句柄的本地重入：租期内不访问redis，租期到期后重新在redis上锁，中断时保留中断标记；持锁时发放fencing令牌，fencing计数器key，批量锁的解锁通知频道
+ * @date 2021/10/18/016 19:05
+ */
+public class RedissonLockImplTest {
+
+    private static final String KEY = "order:lock:1001";
+
+    private FakeRedisson fakeRedisson;
+
+    private RedissonLockImpl redissonLock;
+
+    /**
+     * fencing计数器（StringRedisTemplate的incr由该计数器模拟）
+     */
+    private ValueOperations<String, String> fencingCounter;
+
+    /**
+     * 其他线程（锁按线程持有，同一个句柄需在同一线程上锁和解锁）
+     */
+    private ExecutorService other;
+
+    @Before
+    public void setUp() {
+        fakeRedisson = new FakeRedisson();
+        redissonLock = new RedissonLockImpl();
+        ReflectionTestUtils.setField(redissonLock, "redisson", fakeRedisson.client());
+        ReflectionTestUtils.setField(redissonLock, "stringRedisTemplate", stringRedisTemplate());
+        ReflectionTestUtils.setField(redissonLock, "lockCacheSize", 100L);
+        ReflectionTestUtils.setField(redissonLock, "localStripes", 1024);
+        redissonLock.init();
+        other = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        if (other != null) {
+            other.shutdownNow();
+        }
+    }
+
+    @Test
+    public void reentryWithinLeaseIsLocal() throws Exception {
+        try (LockHandle outer = redissonLock.tryAcquireLock(KEY, 0, 10)) {
+            try (LockHandle inner = redissonLock.tryAcquireLock(KEY, 0, 10)) {
+                assertTrue(outer.isAcquired());
+                assertTrue(inner.isAcquired());
+                assertEquals(1, fakeRedisson.attempts.get());
+            }
+            assertFalse(acquiredByOther());
+        }
+        assertTrue(acquiredByOther());
+    }
+
+    @Test
+    public void reentryAfterLeaseExpiredGoesToRedis() throws Exception {
+        try (LockHandle outer = redissonLock.tryAcquireLock(KEY, 0, 1)) {
+            assertTrue(outer.isAcquired());
+            TimeUnit.MILLISECONDS.sleep(1100);
+            // 租期已过，锁被其他线程拿到，本线程不能再通过本地重入拿到锁
+            assertTrue(other.submit(() -> redissonLock.tryAcquireLock(KEY, 0, 10).isAcquired()).get());
+            try (LockHandle inner = redissonLock.tryAcquireLock(KEY, 0, 1)) {
+                assertFalse(inner.isAcquired());
+            }
+        }
+    }
+
+    @Test
+    public void twoTierReentryAfterLeaseExpiredReleasesLocalLock() throws Exception {
+        try (LockHandle outer = redissonLock.tryAcquireTwoTierLock(KEY, 0, 1)) {
+            assertTrue(outer.isAcquired());
+            TimeUnit.MILLISECONDS.sleep(1100);
+            try (LockHandle inner = redissonLock.tryAcquireTwoTierLock(KEY, 0, 10)) {
+                assertTrue(inner.isAcquired());
+                assertEquals(2, fakeRedisson.attempts.get());
+            }
+        }
+        // 本地分段锁和redis锁都已全部释放
+        assertTrue(other.submit(() -> {
+            try (LockHandle handle = redissonLock.tryAcquireTwoTierLock(KEY, 0, 10)) {
+                return handle.isAcquired();
+            }
+        }).get());
+    }
+
+    @Test
+    public void interruptedWhileWaiting() throws Exception {
+        assertTrue(other.submit(() -> redissonLock.tryAcquireLock(KEY, 0, 10).isAcquired()).get());
+
+        Thread.currentThread().interrupt();
+        LockHandle handle = redissonLock.tryAcquireLock(KEY, 5, 10);
+
+        assertFalse(handle.isAcquired());
+        assertTrue(Thread.interrupted());
+    }
+
+    @Test
+    public void fencingTokenIssuedWhileHeld() throws Exception {
+        AtomicLong counter = new AtomicLong();
+        when(fencingCounter.increment(eq("{order:lock:1001}:fencing"), anyLong())).thenAnswer(invocation -> counter.incrementAndGet());
+
+        try (LockHandle handle = redissonLock.tryAcquireFencedLock(KEY, 0, 10)) {
+            assertTrue(handle.isAcquired());
+            assertEquals(Long.valueOf(1), handle.getFencingToken());
+        }
+        // 下一个持有者拿到更大的令牌
+        assertEquals(Long.valueOf(2), other.submit(() -> {
+            try (LockHandle handle = redissonLock.tryAcquireFencedLock(KEY, 0, 10)) {
+                return handle.getFencingToken();
+            }
+        }).get());
+    }
+
+    @Test
+    public void noFencingTokenAfterLeaseExpired() throws Exception {
+        // 递增令牌期间租期到期（如GC停顿），递增后不再持有锁，丢弃令牌
+        when(fencingCounter.increment(eq("{order:lock:1001}:fencing"), anyLong())).thenAnswer(invocation -> {
+            TimeUnit.MILLISECONDS.sleep(1100);
+            return 1L;
+        });
+
+        try (LockHandle handle = redissonLock.tryAcquireFencedLock(KEY, 0, 1)) {
+            assertFalse(handle.isAcquired());
+            assertNull(handle.getFencingToken());
+        }
+        assertTrue(acquiredByOther());
+    }
+
+    @Test
+    public void fencingKeyInSameSlot() {
+        assertEquals("{order:lock:1001}:fencing", RedissonLockImpl.fencingKey("order:lock:1001"));
+        // 自带hash tag的key保持原有的tag
+        assertEquals("{order}:lock:1001:fencing", RedissonLockImpl.fencingKey("{order}:lock:1001"));
+    }
+
+    @Test
+    public void lockChannelSameAsRedisson() {
+        assertEquals("redisson_lock__channel:{order:lock:1001}", RedissonLockImpl.lockChannel("order:lock:1001"));
+        // key含'{'时redisson直接加前缀
+        assertEquals("redisson_lock__channel:{order}:lock:1001", RedissonLockImpl.lockChannel("{order}:lock:1001"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private StringRedisTemplate stringRedisTemplate() {
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        fencingCounter = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(fencingCounter);
+        return stringRedisTemplate;
+    }
+
+    private boolean acquiredByOther() throws Exception {
+        return other.submit(() -> {
+            try (LockHandle handle = redissonLock.tryAcquireLock(KEY, 0, 10)) {
+                return handle.isAcquired();
+            }
+        }).get();
+    }
+}
@@ -0,0 +1,111 @@
+package com.zlk.common.redis.redisson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @author likuan.zhou
+ * @title: TwoTierLockBenchmark
+ * @projectName common
+ * @description: 同一JVM内多线程争抢锁时，tryAcquireLock与两级锁tryAcquireTwoTierLock的吞吐量和访问redis的上锁次数对比
+ * redis锁由FakeRedisson在内存中模拟（每次上锁尝试200微秒往返，每次解锁后所有等待者各自重试），不需要redis；
+ * 每次迭代结束输出平均每次拿到锁的上锁尝试次数（attempts/acquire），两级锁只有本地队首线程访问redis，应接近1。
+ * keys为争抢的key数量，多个key时可观察本地分段锁带来的排队。运行main方法。
+ * @date 2021/10/18/016 19:05
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class TwoTierLockBenchmark {
+
+    @Param({"1", "8"})
+    private int keys;
+
+    private FakeRedisson fakeRedisson;
+
+    private RedissonLockImpl redissonLock;
+
+    private final AtomicLong acquired = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // 每次上锁尝试模拟200微秒的网络往返
+        fakeRedisson = new FakeRedisson(TimeUnit.MICROSECONDS.toNanos(200));
+        redissonLock = new RedissonLockImpl();
+        ReflectionTestUtils.setField(redissonLock, "redisson", fakeRedisson.client());
+        ReflectionTestUtils.setField(redissonLock, "lockCacheSize", 100L);
+        ReflectionTestUtils.setField(redissonLock, "localStripes", 1024);
+        redissonLock.init();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetCounters() {
+        fakeRedisson.attempts.set(0);
+        acquired.set(0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void printAttempts() {
+        System.out.println();
+        System.out.println("keys=" + keys + ", attempts/acquire=" + (double) fakeRedisson.attempts.get() / Math.max(acquired.get(), 1));
+    }
+
+    @Benchmark
+    public void tryAcquireLock() {
+        try (LockHandle handle = redissonLock.tryAcquireLock(key(), 5, 10)) {
+            hold(handle);
+        }
+    }
+
+    @Benchmark
+    public void tryAcquireTwoTierLock() {
+        try (LockHandle handle = redissonLock.tryAcquireTwoTierLock(key(), 5, 10)) {
+            hold(handle);
+        }
+    }
+
+    private String key() {
+        return "benchmark:lock:" + ThreadLocalRandom.current().nextInt(keys);
+    }
+
+    /**
+     * 持锁期间的业务耗时（500微秒，如一次数据库写入）
+     */
+    private void hold(LockHandle handle) {
+        if (handle.isAcquired()) {
+            acquired.incrementAndGet();
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(500));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TwoTierLockBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,143 @@
+package com.zlk.common.redis.serializer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author likuan.zhou
+ * @title: CompressingRedisSerializerTest
+ * @projectName common
+ * @description: LZ4压缩序列化的存储格式（首字节标记、原始长度）、压缩阈值与往返一致性
+ * 实际序列化使用原样返回byte[]的delegate，便于直接检查存储的字节
+ * @date 2021/10/18/016 19:05
+ */
+public class CompressingRedisSerializerTest {
+
+    private static final int THRESHOLD = 1024;
+
+    private static final RedisSerializer<Object> RAW = new RedisSerializer<Object>() {
+        @Override
+        public byte[] serialize(Object value) {
+            return (byte[]) value;
+        }
+
+        @Override
+        public Object deserialize(byte[] bytes) {
+            return bytes;
+        }
+    };
+
+    private CompressingRedisSerializer serializer;
+
+    @Before
+    public void setUp() {
+        serializer = new CompressingRedisSerializer(RAW, THRESHOLD, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void belowThresholdStoredAsIs() {
+        byte[] value = compressible(THRESHOLD);
+
+        byte[] stored = serializer.serialize(value);
+
+        // 等于阈值不压缩，与未启用压缩时写入的数据相同
+        assertSame(value, stored);
+        assertArrayEquals(value, (byte[]) serializer.deserialize(stored));
+    }
+
+    @Test
+    public void aboveThresholdCompressedWithHeader() {
+        byte[] value = compressible(THRESHOLD * 8 + 3);
+
+        byte[] stored = serializer.serialize(value);
+
+        assertEquals(0x1F, stored[0]);
+        int length = ((stored[1] & 0xFF) << 24) | ((stored[2] & 0xFF) << 16) | ((stored[3] & 0xFF) << 8) | (stored[4] & 0xFF);
+        assertEquals(value.length, length);
+        assertTrue(stored.length < value.length);
+        assertArrayEquals(value, (byte[]) serializer.deserialize(stored));
+    }
+
+    @Test
+    public void incompressibleStoredAsIs() {
+        byte[] value = new byte[THRESHOLD * 4];
+        new Random(1).nextBytes(value);
+        value[0] = '{';
+
+        byte[] stored = serializer.serialize(value);
+
+        assertArrayEquals(value, stored);
+        assertArrayEquals(value, (byte[]) serializer.deserialize(stored));
+    }
+
+    @Test
+    public void controlBytesEscaped() {
+        for (byte first : new byte[]{0x1E, 0x1F}) {
+            byte[] value = {first, 1, 2, 3};
+
+            byte[] stored = serializer.serialize(value);
+
+            assertEquals(0x1E, stored[0]);
+            assertArrayEquals(value, Arrays.copyOfRange(stored, 1, stored.length));
+            assertArrayEquals(value, (byte[]) serializer.deserialize(stored));
+        }
+    }
+
+    @Test
+    public void incompressibleControlByteEscaped() {
+        byte[] value = new byte[THRESHOLD * 4];
+        new Random(2).nextBytes(value);
+        value[0] = 0x1F;
+
+        byte[] stored = serializer.serialize(value);
+
+        assertEquals(0x1E, stored[0]);
+        assertArrayEquals(value, (byte[]) serializer.deserialize(stored));
+    }
+
+    @Test
+    public void readsDataWrittenWithoutCompression() {
+        byte[] legacy = "{\"@class\":\"com.zlk.User\",\"id\":1}".getBytes();
+
+        assertArrayEquals(legacy, (byte[]) serializer.deserialize(legacy));
+    }
+
+    @Test
+    public void nullAndEmptyDelegated() {
+        assertNull(serializer.serialize(null));
+        assertNull(serializer.deserialize(null));
+        assertEquals(0, serializer.serialize(new byte[0]).length);
+    }
+
+    @Test(expected = SerializationException.class)
+    public void truncatedHeaderRejected() {
+        serializer.deserialize(new byte[]{0x1F, 0, 0});
+    }
+
+    @Test(expected = SerializationException.class)
+    public void corruptedDataRejected() {
+        byte[] stored = serializer.serialize(compressible(THRESHOLD * 8));
+        serializer.deserialize(Arrays.copyOf(stored, stored.length / 2));
+    }
+
+    private static byte[] compressible(int length) {
+        byte[] value = new byte[length];
+        byte[] pattern = "{\"id\":1001,\"name\":\"商品\",\"tags\":[\"hot\"]}".getBytes();
+        for (int i = 0; i < length; i++) {
+            value[i] = pattern[i % pattern.length];
+        }
+        return value;
+    }
+}
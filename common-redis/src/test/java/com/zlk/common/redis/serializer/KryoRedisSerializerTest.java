@@ -0,0 +1,154 @@
+package com.zlk.common.redis.serializer;
+
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author likuan.zhou
+ * @title: KryoRedisSerializerTest
+ * @projectName common
+ * @description: Kryo序列化的往返一致性
+ * @date 2021/10/18/016 19:05
+ */
+public class KryoRedisSerializerTest {
+
+    @Test
+    public void roundTripWithoutRegistration() {
+        KryoRedisSerializer serializer = new KryoRedisSerializer();
+        Order order = order(3);
+
+        assertEquals(order, serializer.deserialize(serializer.serialize(order)));
+    }
+
+    @Test
+    public void roundTripWithRegistration() {
+        KryoRedisSerializer registered = new KryoRedisSerializer(Order.class.getName(), ArrayList.class.getName(), HashMap.class.getName());
+        KryoRedisSerializer unregistered = new KryoRedisSerializer();
+        Order order = order(3);
+
+        byte[] bytes = registered.serialize(order);
+
+        assertEquals(order, registered.deserialize(bytes));
+        // 注册的类只写注册ID，不写类名
+        assertTrue(bytes.length < unregistered.serialize(order).length);
+    }
+
+    @Test
+    public void roundTripJdkTypes() {
+        KryoRedisSerializer serializer = new KryoRedisSerializer();
+
+        assertEquals("字符串", serializer.deserialize(serializer.serialize("字符串")));
+        assertEquals(123L, serializer.deserialize(serializer.serialize(123L)));
+        assertEquals(new BigDecimal("99.90"), serializer.deserialize(serializer.serialize(new BigDecimal("99.90"))));
+        List<String> list = new ArrayList<>(Arrays.asList("a", "b"));
+        assertEquals(list, serializer.deserialize(serializer.serialize(list)));
+    }
+
+    @Test
+    public void roundTripWithoutDefaultConstructor() {
+        KryoRedisSerializer serializer = new KryoRedisSerializer();
+        // 没有无参构造器的类通过objenesis实例化
+        Sku sku = new Sku("sku-1", 3);
+
+        Sku result = (Sku) serializer.deserialize(serializer.serialize(sku));
+
+        assertEquals(sku.code, result.code);
+        assertEquals(sku.quantity, result.quantity);
+    }
+
+    @Test
+    public void nullAndEmpty() {
+        KryoRedisSerializer serializer = new KryoRedisSerializer();
+
+        assertEquals(0, serializer.serialize(null).length);
+        assertNull(serializer.deserialize(null));
+        assertNull(serializer.deserialize(new byte[0]));
+    }
+
+    @Test
+    public void largeValueAfterBufferReset() {
+        KryoRedisSerializer serializer = new KryoRedisSerializer();
+        // 超过线程缓冲区复用上限（64KB）
+        Order large = order(5000);
+        Order small = order(1);
+
+        assertEquals(large, serializer.deserialize(serializer.serialize(large)));
+        assertEquals(small, serializer.deserialize(serializer.serialize(small)));
+        assertEquals(large, serializer.deserialize(serializer.serialize(large)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownRegistrationClass() {
+        new KryoRedisSerializer("com.zlk.NotExists");
+    }
+
+    private static Order order(int items) {
+        Order order = new Order();
+        order.id = 1001L;
+        order.userName = "张三";
+        order.amount = new BigDecimal("1999.90");
+        order.createTime = new Date(1634554800000L);
+        order.items = new ArrayList<>();
+        for (int i = 0; i < items; i++) {
+            order.items.add("sku-" + i);
+        }
+        order.extra = new HashMap<>();
+        order.extra.put("channel", "app");
+        return order;
+    }
+
+    static class Sku {
+
+        private final String code;
+        private final int quantity;
+
+        Sku(String code, int quantity) {
+            this.code = code;
+            this.quantity = quantity;
+        }
+    }
+
+    static class Order implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private Long id;
+        private String userName;
+        private BigDecimal amount;
+        private Date createTime;
+        private List<String> items;
+        private Map<String, Object> extra;
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Order)) {
+                return false;
+            }
+            Order order = (Order) o;
+            return Objects.equals(id, order.id) && Objects.equals(userName, order.userName)
+                    && Objects.equals(amount, order.amount) && Objects.equals(createTime, order.createTime)
+                    && Objects.equals(items, order.items) && Objects.equals(extra, order.extra);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, userName, amount, createTime, items, extra);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.zlk.common.redis.serializer;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zlk.common.core.page.PageBean;
+import com.zlk.common.core.response.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author likuan.zhou
+ * @title: RedisSerializerBenchmark
+ * @projectName common
+ * @description: redis value序列化方式的体积与编解码耗时对比
+ * payload为典型的分页响应Response<PageBean<Item>>（size条记录）：
+ * jackson为RedisConfig默认的Jackson默认类型json，kryo为未注册类的Kryo，kryo-registered为注册了payload类的Kryo，
+ * *-lz4为再经过CompressingRedisSerializer（阈值1024字节）。
+ * 序列化后的字节数在setup时输出，运行main方法（GCProfiler同时输出每次调用分配的字节数）。
+ * @date 2021/10/18/016 19:05
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedisSerializerBenchmark {
+
+    @Param({"jackson", "kryo", "kryo-registered", "jackson-lz4", "kryo-registered-lz4"})
+    private String serializer;
+
+    @Param({"1", "20", "200"})
+    private int size;
+
+    private RedisSerializer<Object> redisSerializer;
+
+    private Object payload;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() {
+        String type = serializer.replace("-lz4", "");
+        switch (type) {
+            case "jackson":
+                redisSerializer = jacksonSerializer();
+                break;
+            case "kryo":
+                redisSerializer = new KryoRedisSerializer();
+                break;
+            case "kryo-registered":
+                redisSerializer = new KryoRedisSerializer(Response.class.getName(), PageBean.class.getName(),
+                        Item.class.getName(), ArrayList.class.getName(), Date.class.getName(), BigDecimal.class.getName());
+                break;
+            default:
+                throw new IllegalArgumentException(serializer);
+        }
+        if (serializer.endsWith("-lz4")) {
+            redisSerializer = new CompressingRedisSerializer(redisSerializer, 1024, new SimpleMeterRegistry());
+        }
+        payload = payload(size);
+        bytes = redisSerializer.serialize(payload);
+        System.out.println();
+        System.out.println("serializer=" + serializer + ", size=" + size + ", bytes=" + bytes.length);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return redisSerializer.serialize(payload);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return redisSerializer.deserialize(bytes);
+    }
+
+    /**
+     * 与RedisConfig中jackson序列化的配置一致
+     */
+    private static RedisSerializer<Object> jacksonSerializer() {
+        Jackson2JsonRedisSerializer<Object> jacksonSeial = new Jackson2JsonRedisSerializer<>(Object.class);
+        ObjectMapper om = new ObjectMapper();
+        om.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
+        om.enableDefaultTyping(ObjectMapper.DefaultTyping.NON_FINAL);
+        jacksonSeial.setObjectMapper(om);
+        return jacksonSeial;
+    }
+
+    private static Response<PageBean<Item>> payload(int size) {
+        List<Item> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Item item = new Item();
+            item.id = 100000L + i;
+            item.name = "商品名称-" + i;
+            item.price = new BigDecimal("199.90").add(BigDecimal.valueOf(i));
+            item.stock = 1000 - i;
+            item.createTime = new Date(1634554800000L + i * 1000L);
+            item.tags = new ArrayList<>(Arrays.asList("new", "hot", "tag-" + (i % 10)));
+            items.add(item);
+        }
+        PageBean<Item> page = new PageBean<>(items);
+        page.setTotal(size * 10L);
+        return Response.newSuccessResponse(page);
+    }
+
+    /**
+     * 典型的列表项
+     */
+    public static class Item implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private Long id;
+        private String name;
+        private BigDecimal price;
+        private int stock;
+        private Date createTime;
+        private List<String> tags;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RedisSerializerBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}